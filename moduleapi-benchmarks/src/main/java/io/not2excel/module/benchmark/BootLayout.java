@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.benchmark;
+
+import javax.tools.JavaFileObject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Synthetic production-like module directory: a number of jars with a number of classes each,
+ * a fraction of them {@link io.not2excel.module.annotation.ModuleInfo} modules, the rest plain classes.
+ * Modules load after up to {@link #getMaxLoadAfter()} random earlier modules of any jar, so the ids form a DAG,
+ * and burn CPU in onLoad and onEnable for an exponentially distributed time around the configured means.
+ * <p/>
+ * Layouts are immutable, every with-method returns a copy. Generation is seeded and cached by the layout's name,
+ * a directory is only generated once.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BootLayout {
+
+    private static final String COMPLETE_MARKER = "layout.complete";
+
+    private final int jars;
+    private final int classesPerJar;
+    private final double moduleFraction;
+    private final int maxLoadAfter;
+    private final long loadMicros;
+    private final long enableMicros;
+    private final long seed;
+
+    private BootLayout(int jars, int classesPerJar, double moduleFraction, int maxLoadAfter, long loadMicros,
+                       long enableMicros, long seed) {
+        if (jars < 1 || classesPerJar < 1 || moduleFraction < 0 || moduleFraction > 1 || maxLoadAfter < 0
+                || loadMicros < 0 || enableMicros < 0) {
+            throw new IllegalArgumentException("Invalid boot layout");
+        }
+        this.jars = jars;
+        this.classesPerJar = classesPerJar;
+        this.moduleFraction = moduleFraction;
+        this.maxLoadAfter = maxLoadAfter;
+        this.loadMicros = loadMicros;
+        this.enableMicros = enableMicros;
+        this.seed = seed;
+    }
+
+    /**
+     * Layout with a fifth of the classes being modules, up to 3 loadAfter ids and no callback cost
+     *
+     * @param jars          number of jars
+     * @param classesPerJar classes in every jar
+     * @return layout
+     */
+    public static BootLayout of(int jars, int classesPerJar) {
+        return new BootLayout(jars, classesPerJar, 0.2, 3, 0L, 0L, SyntheticModules.SEED);
+    }
+
+    public BootLayout withModuleFraction(double moduleFraction) {
+        return new BootLayout(this.jars, this.classesPerJar, moduleFraction, this.maxLoadAfter, this.loadMicros,
+                this.enableMicros, this.seed);
+    }
+
+    public BootLayout withMaxLoadAfter(int maxLoadAfter) {
+        return new BootLayout(this.jars, this.classesPerJar, this.moduleFraction, maxLoadAfter, this.loadMicros,
+                this.enableMicros, this.seed);
+    }
+
+    /**
+     * @param loadMicros   mean CPU time burnt by onLoad
+     * @param enableMicros mean CPU time burnt by onEnable
+     * @return layout with the given callback cost
+     */
+    public BootLayout withCost(long loadMicros, long enableMicros) {
+        return new BootLayout(this.jars, this.classesPerJar, this.moduleFraction, this.maxLoadAfter, loadMicros,
+                enableMicros, this.seed);
+    }
+
+    public BootLayout withSeed(long seed) {
+        return new BootLayout(this.jars, this.classesPerJar, this.moduleFraction, this.maxLoadAfter, this.loadMicros,
+                this.enableMicros, seed);
+    }
+
+    /**
+     * @return modules in every jar
+     */
+    public int getModulesPerJar() {
+        return (int) Math.round(this.classesPerJar * this.moduleFraction);
+    }
+
+    public int getModuleCount() {
+        return this.getModulesPerJar() * this.jars;
+    }
+
+    public int getClassCount() {
+        return this.classesPerJar * this.jars;
+    }
+
+    public int getMaxLoadAfter() {
+        return this.maxLoadAfter;
+    }
+
+    /**
+     * @return directory name identifying every parameter of the layout
+     */
+    public String getName() {
+        return String.format(Locale.ROOT, "boot-%dx%d-f%s-d%d-l%d-e%d-s%d", this.jars, this.classesPerJar,
+                Double.toString(this.moduleFraction), this.maxLoadAfter, this.loadMicros, this.enableMicros, this.seed);
+    }
+
+    /**
+     * Generates the layout below the base directory unless it was generated before
+     * All sources are compiled in one pass, every jar owns the package "synth.j&lt;jar&gt;"
+     *
+     * @param baseDirectory directory holding generated layouts
+     * @return module directory
+     * @throws IOException if the layout can't be generated
+     */
+    public File generate(File baseDirectory) throws IOException {
+        File directory = new File(baseDirectory, this.getName());
+        if (new File(directory, COMPLETE_MARKER).isFile()) {
+            return directory;
+        }
+        if (directory.exists()) {
+            SyntheticModules.deleteTree(directory.toPath());
+        }
+        Files.createDirectories(directory.toPath());
+        Random random = new Random(this.seed);
+        int modulesPerJar = this.getModulesPerJar();
+        List<JavaFileObject> sources = new ArrayList<>(this.getClassCount());
+        for (int jar = 0; jar < this.jars; jar++) {
+            String packageName = "synth.j" + jar;
+            for (int c = 0; c < this.classesPerJar; c++) {
+                if (c < modulesPerJar) {
+                    int index = jar * modulesPerJar + c;
+                    sources.add(SyntheticModules.source(packageName, "M" + index,
+                            this.moduleSource(packageName, index, random)));
+                } else {
+                    sources.add(SyntheticModules.source(packageName, "C" + c, fillerSource(packageName, c)));
+                }
+            }
+        }
+        Path classes = Files.createTempDirectory(baseDirectory.toPath(), "classes");
+        try {
+            SyntheticModules.compile(sources, classes.toFile());
+            for (int jar = 0; jar < this.jars; jar++) {
+                Path packageDirectory = classes.resolve("synth").resolve("j" + jar);
+                Path jarRoot = Files.createTempDirectory(baseDirectory.toPath(), "jar");
+                try {
+                    Path target = jarRoot.resolve("synth").resolve("j" + jar);
+                    Files.createDirectories(target.getParent());
+                    Files.move(packageDirectory, target);
+                    SyntheticModules.writeJar(jarRoot, new File(directory, String.format("module-%04d.jar", jar)));
+                } finally {
+                    SyntheticModules.deleteTree(jarRoot);
+                }
+            }
+        } finally {
+            SyntheticModules.deleteTree(classes);
+        }
+        Files.write(new File(directory, COMPLETE_MARKER).toPath(), this.toString().getBytes(StandardCharsets.UTF_8));
+        return directory;
+    }
+
+    private String moduleSource(String packageName, int index, Random random) {
+        int count = index == 0 ? 0 : random.nextInt(Math.min(this.maxLoadAfter, index) + 1);
+        String[] loadAfter = new String[count];
+        for (int d = 0; d < count; d++) {
+            loadAfter[d] = '"' + "m" + random.nextInt(index) + '"';
+        }
+        long loadNanos = cost(random, this.loadMicros);
+        long enableNanos = cost(random, this.enableMicros);
+        return "package " + packageName + ";\n"
+                + "@io.not2excel.module.annotation.ModuleInfo(id = \"m" + index + "\", name = \"M" + index
+                + "\", loadAfter = {" + Arrays.stream(loadAfter).distinct().collect(Collectors.joining(", ")) + "})\n"
+                + "public class M" + index + " implements io.not2excel.module.context.Module {\n"
+                + "    private static void burn(long nanos) {\n"
+                + "        long end = System.nanoTime() + nanos;\n"
+                + "        while (System.nanoTime() < end) {\n"
+                + "        }\n"
+                + "    }\n"
+                + "    public void onLoad() { burn(" + loadNanos + "L); }\n"
+                + "    public void onUnload() {}\n"
+                + "    public void onEnable() { burn(" + enableNanos + "L); }\n"
+                + "    public void onDisable() {}\n"
+                + "}\n";
+    }
+
+    private static String fillerSource(String packageName, int index) {
+        return "package " + packageName + ";\n"
+                + "public class C" + index + " {\n"
+                + "    private final int[] values = new int[" + (index % 7 + 1) + "];\n"
+                + "    public int sum() { int s = 0; for (int v : values) { s += v; } return s; }\n"
+                + "    @Override public String toString() { return \"C" + index + "\" + sum(); }\n"
+                + "}\n";
+    }
+
+    private static long cost(Random random, long meanMicros) {
+        return meanMicros == 0 ? 0L : (long) (-Math.log(1.0 - random.nextDouble()) * meanMicros * 1000L);
+    }
+
+    @Override
+    public String toString() {
+        return this.jars + " jars x " + this.classesPerJar + " classes, " + this.getModuleCount() + " modules, loadAfter <= "
+                + this.maxLoadAfter + ", onLoad ~" + this.loadMicros + "us, onEnable ~" + this.enableMicros + "us, seed "
+                + this.seed;
+    }
+}
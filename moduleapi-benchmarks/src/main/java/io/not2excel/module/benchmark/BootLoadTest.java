@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.benchmark;
+
+import io.not2excel.module.ConcurrentModuleCoordinator;
+import io.not2excel.module.ModuleCoordinator;
+import io.not2excel.module.SimpleModuleCoordinator;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.loader.BootPlan;
+import io.not2excel.module.loader.ModuleLifecycleExecutor;
+import io.not2excel.module.loader.SimpleModuleLoader;
+import io.not2excel.util.ScanCache;
+
+import java.io.File;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end boot of a generated {@link BootLayout} through {@link SimpleModuleLoader}, meant to run in a fresh JVM:
+ * <pre>
+ * java -cp target/benchmarks.jar io.not2excel.module.benchmark.BootLoadTest --jars=400 --classes=50 --mode=isolated
+ * </pre>
+ * Options, all optional:
+ * <ul>
+ * <li>--jars, --classes: layout size, default 400 x 50</li>
+ * <li>--modules: fraction of classes that are modules, default 0.2</li>
+ * <li>--load-after: maximum loadAfter ids per module, default 3</li>
+ * <li>--load-cost, --enable-cost: mean onLoad / onEnable CPU time in microseconds, default 0</li>
+ * <li>--seed: generator seed</li>
+ * <li>--mode: shared (loadModulesFromDirectory), isolated (loadModulesFromDirectoryIsolated),
+ * bootplan (loadModulesFromBootPlan) or parallel (isolated, then load and enable on a thread pool), default shared</li>
+ * <li>--threads: pool size of the parallel mode, default the number of processors</li>
+ * <li>--warm: keep the scan cache and boot plan of previous runs, by default both are deleted first</li>
+ * <li>--dir: directory generated layouts are kept in, default target/synthetic</li>
+ * </ul>
+ * Reports the wall time of every phase, peak heap, metaspace, loaded classes, threads and GC activity of the boot,
+ * followed by the same figures as one CSV line for collecting runs.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BootLoadTest {
+
+    private BootLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        BootLayout layout = BootLayout.of(Integer.parseInt(options.getOrDefault("jars", "400")),
+                Integer.parseInt(options.getOrDefault("classes", "50")))
+                .withModuleFraction(Double.parseDouble(options.getOrDefault("modules", "0.2")))
+                .withMaxLoadAfter(Integer.parseInt(options.getOrDefault("load-after", "3")))
+                .withCost(Long.parseLong(options.getOrDefault("load-cost", "0")),
+                        Long.parseLong(options.getOrDefault("enable-cost", "0")))
+                .withSeed(Long.parseLong(options.getOrDefault("seed", Long.toString(SyntheticModules.SEED))));
+        String mode = options.getOrDefault("mode", "shared");
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        File base = new File(options.getOrDefault("dir", SyntheticModules.baseDirectory().getPath())).getAbsoluteFile();
+
+        boolean generated = !new File(base, layout.getName()).isDirectory();
+        long generateStart = System.nanoTime();
+        File directory = layout.generate(base);
+        System.out.printf(Locale.ROOT, "layout    %s%n          %s (ready in %d ms)%n", layout, directory,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - generateStart));
+        if (generated) {
+            System.out.println("          generated by this run, rerun for memory figures without the compiler's garbage");
+        }
+        if (!options.containsKey("warm")) {
+            delete(new File(directory.getPath() + ScanCache.FILE_SUFFIX));
+            delete(BootPlan.fileFor(directory));
+        }
+
+        Snapshot before = Snapshot.take();
+        Map<String, Long> phases = boot(directory, mode, threads);
+        Snapshot after = Snapshot.take();
+        report(layout, mode, phases, before, after);
+    }
+
+    /**
+     * Boots the directory and returns the wall time of every phase in nanoseconds, "total" last
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> boot(File directory, String mode, int threads) {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        long mark = start;
+        ModuleCoordinator<Module> coordinator = "parallel".equals(mode)
+                ? new ConcurrentModuleCoordinator<>(Module.class) : new SimpleModuleCoordinator<>(Module.class);
+        SimpleModuleLoader<Module> loader = new SimpleModuleLoader<>(coordinator);
+        List<Class<Module>> ordered;
+        if ("bootplan".equals(mode)) {
+            ordered = loader.loadModulesFromBootPlan(directory);
+            mark = phase(phases, "plan+load", mark);
+        } else {
+            List<Class<?>> scanned = "shared".equals(mode) ? loader.loadModulesFromDirectory(directory)
+                    : loader.loadModulesFromDirectoryIsolated(directory);
+            mark = phase(phases, "scan", mark);
+            List<Class<Module>> modules = new ArrayList<>(scanned.size());
+            scanned.forEach(c -> modules.add((Class<Module>) c));
+            ordered = loader.sortModulesByLoadOrder(modules);
+            mark = phase(phases, "sort", mark);
+            if ("parallel".equals(mode)) {
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                    ModuleLifecycleExecutor<Module> lifecycle = new ModuleLifecycleExecutor<>(coordinator, executor);
+                    lifecycle.load(ordered);
+                    mark = phase(phases, "load", mark);
+                    lifecycle.enable(modulesOf(coordinator, ordered));
+                    mark = phase(phases, "enable", mark);
+                } finally {
+                    executor.shutdown();
+                }
+                phases.put("total", System.nanoTime() - start);
+                return phases;
+            }
+            loader.loadModules(ordered);
+            mark = phase(phases, "load", mark);
+        }
+        coordinator.enable(modulesOf(coordinator, ordered));
+        phase(phases, "enable", mark);
+        phases.put("total", System.nanoTime() - start);
+        if (coordinator.getModuleList().size() != ordered.size()) {
+            System.err.println("Only " + coordinator.getModuleList().size() + " of " + ordered.size() + " modules loaded");
+        }
+        return phases;
+    }
+
+    private static List<Module> modulesOf(ModuleCoordinator<Module> coordinator, List<Class<Module>> ordered) {
+        List<Module> modules = new ArrayList<>(ordered.size());
+        for (Class<Module> moduleClass : ordered) {
+            Module module = coordinator.getModule(moduleClass);
+            if (module != null) {
+                modules.add(module);
+            }
+        }
+        return modules;
+    }
+
+    private static long phase(Map<String, Long> phases, String name, long mark) {
+        long now = System.nanoTime();
+        phases.put(name, now - mark);
+        return now;
+    }
+
+    private static void report(BootLayout layout, String mode, Map<String, Long> phases, Snapshot before,
+                               Snapshot after) {
+        System.out.println("mode      " + mode);
+        phases.forEach((name, nanos) -> System.out.printf(Locale.ROOT, "%-9s %,d ms%n", name,
+                TimeUnit.NANOSECONDS.toMillis(nanos)));
+        System.out.printf(Locale.ROOT, "heap      peak %,d MB, used %,d MB after boot%n", mb(after.heapPeak),
+                mb(after.heapUsed));
+        System.out.printf(Locale.ROOT, "metaspace %,d MB (+%,d MB), class space %,d MB%n", mb(after.metaspaceUsed),
+                mb(after.metaspaceUsed - before.metaspaceUsed), mb(after.classSpaceUsed));
+        System.out.printf(Locale.ROOT, "classes   %,d loaded (+%,d)%n", after.loadedClasses,
+                after.totalLoadedClasses - before.totalLoadedClasses);
+        System.out.printf(Locale.ROOT, "threads   peak %d, live %d, %d started during boot%n", after.peakThreads,
+                after.liveThreads, after.startedThreads - before.startedThreads);
+        System.out.printf(Locale.ROOT, "gc        %d collections, %,d ms%n", after.gcCount - before.gcCount,
+                after.gcMillis - before.gcMillis);
+        System.out.printf(Locale.ROOT, "csv       %s,%s,%d,%d,%d,%s,%d,%d,%d,%d,%d,%d,%d%n", layout.getName(), mode,
+                layout.getModuleCount(), layout.getClassCount(), TimeUnit.NANOSECONDS.toMillis(phases.get("total")),
+                phases.entrySet().stream().filter(e -> !"total".equals(e.getKey()))
+                        .map(e -> e.getKey() + "=" + TimeUnit.NANOSECONDS.toMillis(e.getValue()))
+                        .reduce((a, b) -> a + ";" + b).orElse(""),
+                mb(after.heapPeak), mb(after.metaspaceUsed), after.totalLoadedClasses - before.totalLoadedClasses,
+                after.peakThreads, after.startedThreads - before.startedThreads, after.gcCount - before.gcCount,
+                after.gcMillis - before.gcMillis);
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024L * 1024L);
+    }
+
+    private static void delete(File file) {
+        if (file.isFile() && !file.delete()) {
+            System.err.println("Failed to delete " + file);
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+            int split = arg.indexOf('=');
+            options.put(split < 0 ? arg.substring(2) : arg.substring(2, split), split < 0 ? "" : arg.substring(split + 1));
+        }
+        return options;
+    }
+
+    /**
+     * JVM figures at one point in time, taking the first snapshot resets the peaks
+     */
+    private static final class Snapshot {
+
+        private long heapUsed;
+        private long heapPeak;
+        private long metaspaceUsed;
+        private long classSpaceUsed;
+        private int loadedClasses;
+        private long totalLoadedClasses;
+        private int liveThreads;
+        private int peakThreads;
+        private long startedThreads;
+        private long gcCount;
+        private long gcMillis;
+        private static boolean reset;
+
+        static Snapshot take() {
+            if (!reset) {
+                ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+                ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+                reset = true;
+            }
+            Snapshot snapshot = new Snapshot();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    snapshot.heapUsed += pool.getUsage().getUsed();
+                    snapshot.heapPeak += pool.getPeakUsage().getUsed();
+                } else if ("Metaspace".equals(pool.getName())) {
+                    snapshot.metaspaceUsed = pool.getUsage().getUsed();
+                } else if ("Compressed Class Space".equals(pool.getName())) {
+                    snapshot.classSpaceUsed = pool.getUsage().getUsed();
+                }
+            }
+            ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+            snapshot.loadedClasses = classLoading.getLoadedClassCount();
+            snapshot.totalLoadedClasses = classLoading.getTotalLoadedClassCount();
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            snapshot.liveThreads = threadBean.getThreadCount();
+            snapshot.peakThreads = threadBean.getPeakThreadCount();
+            snapshot.startedThreads = threadBean.getTotalStartedThreadCount();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                snapshot.gcCount += Math.max(0L, gc.getCollectionCount());
+                snapshot.gcMillis += Math.max(0L, gc.getCollectionTime());
+            }
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.benchmark;
+
+import io.not2excel.module.BatchResult;
+import io.not2excel.module.ModuleCoordinator;
+import io.not2excel.module.context.Module;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk enable followed by bulk disable of every generated module, so each invocation runs every callback twice
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LifecycleBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int modules;
+
+    @Param({"simple", "concurrent"})
+    public String coordinator;
+
+    private ModuleCoordinator<Module> moduleCoordinator;
+    private List<Module> moduleList;
+    private List<String> ids;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        List<Class<Module>> moduleClasses = SyntheticModules.load(SyntheticModules.jar(this.modules));
+        this.moduleCoordinator = LookupBenchmark.newCoordinator(this.coordinator);
+        this.moduleCoordinator.load(moduleClasses);
+        this.moduleList = new ArrayList<>(this.moduleCoordinator.getModuleList().values());
+        this.ids = this.moduleList.stream().map(m -> this.moduleCoordinator.getModuleInfo(m).id())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public ModuleCoordinator<Module> enableDisable() {
+        this.moduleCoordinator.enable(this.moduleList);
+        this.moduleCoordinator.disable(this.moduleList);
+        return this.moduleCoordinator;
+    }
+
+    @Benchmark
+    public BatchResult enableDisableBatch() {
+        this.moduleCoordinator.enableBatch(this.ids);
+        return this.moduleCoordinator.disableBatch(this.ids);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.benchmark;
+
+import io.not2excel.module.ConcurrentModuleCoordinator;
+import io.not2excel.module.ModuleCoordinator;
+import io.not2excel.module.SimpleModuleCoordinator;
+import io.not2excel.module.context.Module;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Module lookups by id and by class against a coordinator holding every generated module.
+ * Keys are drawn from a fixed random sequence so lookups don't stay in one cache line.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final int KEYS = 1024;
+
+    @Param({"10", "1000", "10000"})
+    public int modules;
+
+    @Param({"simple", "concurrent"})
+    public String coordinator;
+
+    private ModuleCoordinator<Module> moduleCoordinator;
+    private final String[] ids = new String[KEYS];
+    private final Class<?>[] classes = new Class<?>[KEYS];
+    private int cursor;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void load() throws IOException {
+        List<Class<Module>> moduleClasses = SyntheticModules.load(SyntheticModules.jar(this.modules));
+        this.moduleCoordinator = newCoordinator(this.coordinator);
+        this.moduleCoordinator.load(moduleClasses);
+        Random random = new Random(SyntheticModules.SEED);
+        for (int i = 0; i < KEYS; i++) {
+            Class<Module> moduleClass = moduleClasses.get(random.nextInt(moduleClasses.size()));
+            this.classes[i] = moduleClass;
+            this.ids[i] = this.moduleCoordinator.getModuleInfo(moduleClass).id();
+        }
+    }
+
+    static ModuleCoordinator<Module> newCoordinator(String type) {
+        return "concurrent".equals(type) ? new ConcurrentModuleCoordinator<>(Module.class)
+                : new SimpleModuleCoordinator<>(Module.class);
+    }
+
+    private int next() {
+        return this.cursor = (this.cursor + 1) & (KEYS - 1);
+    }
+
+    @Benchmark
+    public Module getModuleById() {
+        return this.moduleCoordinator.getModule(this.ids[this.next()]);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Module getModuleByClass() {
+        return this.moduleCoordinator.getModule((Class<? extends Module>) this.classes[this.next()]);
+    }
+
+    @Benchmark
+    public boolean hasModuleById() {
+        return this.moduleCoordinator.hasModule(this.ids[this.next()]);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public boolean hasModuleByClass() {
+        return this.moduleCoordinator.hasModule((Class<? extends Module>) this.classes[this.next()]);
+    }
+}
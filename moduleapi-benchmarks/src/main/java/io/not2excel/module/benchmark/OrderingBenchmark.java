@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.benchmark;
+
+import io.not2excel.module.SimpleModuleCoordinator;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.loader.SimpleModuleLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SimpleModuleLoader#sortModulesByLoadOrder(List)} over the generated loadAfter DAG, in shuffled input order
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OrderingBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int modules;
+
+    private SimpleModuleLoader<Module> moduleLoader;
+    private List<Class<Module>> shuffled;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        this.moduleLoader = new SimpleModuleLoader<>(new SimpleModuleCoordinator<>(Module.class));
+        this.shuffled = new ArrayList<>(SyntheticModules.load(SyntheticModules.jar(this.modules)));
+        Collections.shuffle(this.shuffled, new Random(SyntheticModules.SEED));
+    }
+
+    @Benchmark
+    public List<Class<Module>> sortModulesByLoadOrder() {
+        return this.moduleLoader.sortModulesByLoadOrder(this.shuffled);
+    }
+}
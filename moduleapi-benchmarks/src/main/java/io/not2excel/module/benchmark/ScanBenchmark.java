@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.benchmark;
+
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.util.ClassEnumerator;
+import io.not2excel.util.ClassLoaderRegistry;
+import io.not2excel.util.ScanFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold scans of a single jar and of a directory of jars, with and without a pre-scan filter.
+ * The pooled loaders are renewed before every invocation, so every class is defined again.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int modules;
+
+    private File jar;
+    private File directory;
+    private List<File> directoryJars;
+    private ScanFilter filter;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        this.jar = SyntheticModules.jar(this.modules);
+        this.directory = SyntheticModules.directory(this.modules);
+        this.directoryJars = ClassEnumerator.listJars(this.directory);
+        this.filter = ScanFilter.of(Module.class, ModuleInfo.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void renewLoaders() {
+        ClassLoaderRegistry registry = ClassLoaderRegistry.getDefault();
+        registry.renew(this.jar);
+        registry.renew(this.directory);
+        this.directoryJars.forEach(registry::renew);
+    }
+
+    @Benchmark
+    public ClassEnumerator.LoadedClasses jarUnformatted() {
+        return ClassEnumerator.loadClassesFromJarUnformatted(this.jar);
+    }
+
+    @Benchmark
+    public ClassEnumerator.LoadedClasses jarUnformattedFiltered() {
+        return ClassEnumerator.loadClassesFromJarUnformatted(this.jar, this.filter);
+    }
+
+    @Benchmark
+    public Map<String, ClassEnumerator.LoadedClasses> directory() {
+        return ClassEnumerator.loadClassesFromDirectory(this.directory, true);
+    }
+
+    @Benchmark
+    public Map<String, ClassEnumerator.LoadedClasses> directoryFiltered() {
+        return ClassEnumerator.loadClassesFromDirectory(this.directory, true, this.filter);
+    }
+}
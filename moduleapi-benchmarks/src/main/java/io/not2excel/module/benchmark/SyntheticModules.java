@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.benchmark;
+
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.util.ClassEnumerator;
+import io.not2excel.util.ClassLoaderRegistry;
+import io.not2excel.util.ScanFilter;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates jars of synthetic modules with javax.tools, reused across runs.
+ * Module i is "synth.p&lt;i / 100&gt;.M&lt;i&gt;" with id "m&lt;i&gt;" and loads after up to two random earlier modules,
+ * so the ids always form a DAG. Every module is paired with a plain filler class the scanner has to skip.
+ * Generation is seeded, the same parameters always produce the same classes.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class SyntheticModules {
+
+    public static final long SEED = 42L;
+    public static final int MODULES_PER_JAR = 500;
+
+    private static final int MODULES_PER_PACKAGE = 100;
+
+    private SyntheticModules() {
+    }
+
+    /**
+     * @return directory generated jars are kept in, "target/synthetic" unless set by -Dmoduleapi.benchmark.dir
+     */
+    public static File baseDirectory() {
+        return new File(System.getProperty("moduleapi.benchmark.dir", "target/synthetic")).getAbsoluteFile();
+    }
+
+    /**
+     * @param modules number of modules
+     * @return single jar holding every module
+     * @throws IOException if the jar can't be generated
+     */
+    public static File jar(int modules) throws IOException {
+        File jar = new File(baseDirectory(), "modules-" + modules + "-" + SEED + ".jar");
+        if (!jar.isFile()) {
+            write(jar, 0, modules, new Random(SEED));
+        }
+        return jar;
+    }
+
+    /**
+     * @param modules number of modules
+     * @return directory of jars with up to {@link #MODULES_PER_JAR} modules each
+     * @throws IOException if a jar can't be generated
+     */
+    public static File directory(int modules) throws IOException {
+        File directory = new File(baseDirectory(), "modules-" + modules + "-" + SEED);
+        int jars = (modules + MODULES_PER_JAR - 1) / MODULES_PER_JAR;
+        Random random = new Random(SEED);
+        for (int i = 0; i < jars; i++) {
+            File jar = new File(directory, String.format("part-%04d.jar", i));
+            int from = i * MODULES_PER_JAR;
+            int to = Math.min(modules, from + MODULES_PER_JAR);
+            if (!jar.isFile()) {
+                write(jar, from, to, random);
+            } else {
+                skip(random, from, to);
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Loads the module classes of a generated jar through the default {@link ClassLoaderRegistry}
+     *
+     * @param jar generated jar
+     * @return module classes ordered by index
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Class<Module>> load(File jar) {
+        return ClassEnumerator.filterByAssignableFrom(ClassEnumerator.loadClassesFromJarUnformatted(jar,
+                ScanFilter.of(Module.class, ModuleInfo.class)), Module.class).stream()
+                .map(c -> (Class<Module>) c)
+                .sorted(Comparator.comparingInt(c -> Integer.parseInt(c.getSimpleName().substring(1))))
+                .collect(Collectors.toList());
+    }
+
+    private static void write(File jar, int from, int to, Random random) throws IOException {
+        List<JavaFileObject> sources = new ArrayList<>((to - from) * 2);
+        for (int i = from; i < to; i++) {
+            sources.add(source(packageOf(i), "M" + i, moduleSource(i, loadAfter(random, i))));
+            sources.add(source(packageOf(i), "F" + i, fillerSource(i)));
+        }
+        File parent = jar.getParentFile();
+        Files.createDirectories(parent.toPath());
+        Path classes = Files.createTempDirectory(parent.toPath(), "classes");
+        try {
+            compile(sources, classes.toFile());
+            writeJar(classes, jar);
+        } finally {
+            deleteTree(classes);
+        }
+    }
+
+    /**
+     * Packs a class output directory into a jar, written to a temp file and moved into place
+     */
+    static void writeJar(Path classes, File jar) throws IOException {
+        Files.createDirectories(jar.getAbsoluteFile().getParentFile().toPath());
+        File temp = File.createTempFile(jar.getName(), ".tmp", jar.getAbsoluteFile().getParentFile());
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(temp));
+             Stream<Path> files = Files.walk(classes)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                out.putNextEntry(new JarEntry(classes.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+        Files.move(temp.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    static void compile(List<JavaFileObject> sources, File output) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("Generating synthetic modules needs a JDK, no system Java compiler found");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(output));
+            List<String> options = Arrays.asList("-proc:none", "-g:none", "-classpath", System.getProperty("java.class.path"));
+            if (!compiler.getTask(null, fileManager, diagnostics, options, null, sources).call()) {
+                throw new IOException("Failed to compile synthetic modules: " + diagnostics.getDiagnostics());
+            }
+        }
+    }
+
+    private static String[] loadAfter(Random random, int index) {
+        int count = index == 0 ? 0 : random.nextInt(3);
+        String[] ids = new String[count];
+        for (int d = 0; d < count; d++) {
+            ids[d] = "m" + random.nextInt(index);
+        }
+        return ids;
+    }
+
+    private static void skip(Random random, int from, int to) {
+        for (int i = from; i < to; i++) {
+            loadAfter(random, i);
+        }
+    }
+
+    private static String packageOf(int index) {
+        return "synth.p" + index / MODULES_PER_PACKAGE;
+    }
+
+    private static String moduleSource(int index, String[] loadAfter) {
+        String ids = Arrays.stream(loadAfter).map(id -> '"' + id + '"').collect(Collectors.joining(", "));
+        return "package " + packageOf(index) + ";\n"
+                + "@io.not2excel.module.annotation.ModuleInfo(id = \"m" + index + "\", name = \"M" + index
+                + "\", loadAfter = {" + ids + "})\n"
+                + "public class M" + index + " implements io.not2excel.module.context.Module {\n"
+                + "    public void onLoad() {}\n"
+                + "    public void onUnload() {}\n"
+                + "    public void onEnable() {}\n"
+                + "    public void onDisable() {}\n"
+                + "}\n";
+    }
+
+    private static String fillerSource(int index) {
+        return "package " + packageOf(index) + ";\n"
+                + "public class F" + index + " {\n"
+                + "    private final int value = " + index + ";\n"
+                + "    public int value() { return value; }\n"
+                + "}\n";
+    }
+
+    static JavaFileObject source(String packageName, String className, String code) {
+        URI uri = URI.create("string:///" + packageName.replace('.', '/') + "/" + className + ".java");
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
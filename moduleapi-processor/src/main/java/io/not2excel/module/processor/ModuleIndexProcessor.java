@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes every {@code @ModuleInfo} annotated class of a compilation unit to {@link #INDEX_RESOURCE}
+ * so the module loader can find modules without enumerating the jar.
+ * <p/>
+ * The index is a UTF-8 text file, one module per line:
+ * {@code className<TAB>id<TAB>name<TAB>loadAfter[,loadAfter...]}
+ * where tabs, new lines, commas and backslashes inside values are backslash escaped.
+ * The format must stay in sync with {@code io.not2excel.module.loader.ModuleIndex}.
+ * <p/>
+ * Add this artifact to the compile classpath (or annotationProcessorPaths) of a module jar to enable it.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ModuleIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_RESOURCE = "META-INF/moduleapi/modules.idx";
+    public static final String INDEX_HEADER = "# module-api module index v1";
+
+    private static final String MODULE_INFO = "io.not2excel.module.annotation.ModuleInfo";
+    private static final String MODULE = "io.not2excel.module.context.Module";
+
+    private final Map<String, String[]> entries = new TreeMap<>();
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+    private boolean previousIndexRead;
+    private boolean previousIndexFound;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.filer = processingEnv.getFiler();
+        this.messager = processingEnv.getMessager();
+    }
+
+    /**
+     * Every type, so the processor also runs when the last @ModuleInfo of a compilation was removed
+     * and the previous index has to be rewritten
+     */
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (!this.previousIndexRead) {
+            this.previousIndexRead = true;
+            this.readPreviousIndex();
+        }
+        for (Element root : roundEnv.getRootElements()) {
+            this.forget(root);
+        }
+        TypeElement moduleInfo = this.elements.getTypeElement(MODULE_INFO);
+        if (moduleInfo != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(moduleInfo)) {
+                this.record(element, moduleInfo);
+            }
+        }
+        if (roundEnv.processingOver()) {
+            this.writeIndex();
+        }
+        return false;
+    }
+
+    /**
+     * Drops previous entries of a type being compiled and of its nested types, they are recorded again if still annotated
+     */
+    private void forget(Element element) {
+        if (element instanceof TypeElement) {
+            this.entries.remove(this.elements.getBinaryName((TypeElement) element).toString());
+        }
+        for (Element enclosed : element.getEnclosedElements()) {
+            if (enclosed instanceof TypeElement) {
+                this.forget(enclosed);
+            }
+        }
+    }
+
+    private void record(Element element, TypeElement moduleInfo) {
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+            this.messager.printMessage(Diagnostic.Kind.WARNING,
+                    "@ModuleInfo is only loaded from concrete classes, not indexed", element);
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        TypeElement module = this.elements.getTypeElement(MODULE);
+        if (module != null && !this.types.isAssignable(type.asType(), this.types.erasure(module.asType()))) {
+            this.messager.printMessage(Diagnostic.Kind.ERROR, "@ModuleInfo class must implement " + MODULE, element);
+            return;
+        }
+        AnnotationMirror mirror = null;
+        for (AnnotationMirror candidate : type.getAnnotationMirrors()) {
+            if (this.types.isSameType(candidate.getAnnotationType(), moduleInfo.asType())) {
+                mirror = candidate;
+                break;
+            }
+        }
+        if (mirror == null) {
+            return;
+        }
+        String id = "";
+        String name = "";
+        List<String> loadAfter = new ArrayList<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value :
+                this.elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            String key = value.getKey().getSimpleName().toString();
+            Object raw = value.getValue().getValue();
+            if ("id".equals(key)) {
+                id = String.valueOf(raw);
+            } else if ("name".equals(key)) {
+                name = String.valueOf(raw);
+            } else if ("loadAfter".equals(key) && raw instanceof List) {
+                for (Object dependency : (List<?>) raw) {
+                    loadAfter.add(String.valueOf(((AnnotationValue) dependency).getValue()));
+                }
+            }
+        }
+        String className = this.elements.getBinaryName(type).toString();
+        for (Map.Entry<String, String[]> existing : this.entries.entrySet()) {
+            if (!existing.getKey().equals(className) && existing.getValue()[0].equalsIgnoreCase(id)) {
+                this.messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Duplicate module id " + id + ", already used by " + existing.getKey(), element);
+                return;
+            }
+        }
+        this.entries.put(className, new String[]{id, name, join(loadAfter)});
+    }
+
+    /**
+     * Keeps entries of an earlier, incremental compilation whose classes still exist,
+     * entries of types compiled again are dropped by {@link #forget(Element)}
+     */
+    private void readPreviousIndex() {
+        try {
+            FileObject resource = this.filer.getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(resource.openInputStream(), StandardCharsets.UTF_8))) {
+                this.previousIndexFound = true;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] columns = line.split("\t", -1);
+                    if (columns.length < 4 || this.elements.getTypeElement(unescape(columns[0])) == null) {
+                        continue;
+                    }
+                    this.entries.put(unescape(columns[0]), new String[]{unescape(columns[1]), unescape(columns[2]), columns[3]});
+                }
+            }
+        } catch (IOException | IllegalArgumentException ignored) {
+            // no previous index
+        }
+    }
+
+    /**
+     * Writes the index, an earlier index is always rewritten even if no module is left
+     */
+    private void writeIndex() {
+        if (this.entries.isEmpty() && !this.previousIndexFound) {
+            return;
+        }
+        try {
+            FileObject resource = this.filer.createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write(INDEX_HEADER);
+                writer.write('\n');
+                for (Map.Entry<String, String[]> entry : this.entries.entrySet()) {
+                    writer.write(escape(entry.getKey()));
+                    writer.write('\t');
+                    writer.write(escape(entry.getValue()[0]));
+                    writer.write('\t');
+                    writer.write(escape(entry.getValue()[1]));
+                    writer.write('\t');
+                    writer.write(entry.getValue()[2]);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            this.messager.printMessage(Diagnostic.Kind.ERROR, "Failed to write " + INDEX_RESOURCE + ": " + e.getMessage());
+        }
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(escape(value));
+        }
+        return builder.toString();
+    }
+
+    private static String escape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case ',':
+                    builder.append("\\,");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String unescape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Runs one lifecycle step over a batch of modules off the calling thread.
+ * The batch runs in order on a single executor task, so coordinators that aren't thread safe stay safe
+ * as long as nothing else uses them concurrently. On timeout the future completes right away,
+ * unfinished steps are reported as timed out, a running step is left to finish and later ones are skipped.
+ */
+final class AsyncLifecycle {
+
+    private AsyncLifecycle() {
+    }
+
+    @FunctionalInterface
+    interface Step<T> {
+
+        void apply(T item) throws Exception;
+    }
+
+    static <T> CompletableFuture<List<ModuleResult>> run(List<T> items, Function<T, String> idOf, Step<T> step,
+                                                         Executor executor, long timeout, TimeUnit unit) {
+        List<T> batch = new ArrayList<>(items);
+        ModuleResult[] results = new ModuleResult[batch.size()];
+        CompletableFuture<List<ModuleResult>> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                for (int i = 0; i < batch.size() && !future.isDone(); i++) {
+                    T item = batch.get(i);
+                    String id = null;
+                    long start = System.nanoTime();
+                    ModuleResult result;
+                    try {
+                        id = idOf.apply(item);
+                        step.apply(item);
+                        result = ModuleResult.success(id, System.nanoTime() - start);
+                    } catch (Throwable e) {
+                        result = ModuleResult.failure(id != null ? id : String.valueOf(item), e,
+                                System.nanoTime() - start);
+                    }
+                    synchronized (results) {
+                        results[i] = result;
+                    }
+                }
+                future.complete(snapshot(batch, idOf, results, null));
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                if (!future.isDone()) {
+                    future.completeExceptionally(new IllegalStateException("Lifecycle task ended without results"));
+                }
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (timeout > 0) {
+            ScheduledFuture<?> timer = ModuleExecutors.getTimeoutScheduler().schedule(() -> {
+                TimeoutException timedOut = new TimeoutException("Timed out after " + timeout + " "
+                        + unit.name().toLowerCase());
+                future.complete(snapshot(batch, idOf, results, timedOut));
+            }, timeout, unit);
+            future.whenComplete((r, e) -> timer.cancel(false));
+        }
+        return future;
+    }
+
+    private static <T> List<ModuleResult> snapshot(List<T> batch, Function<T, String> idOf, ModuleResult[] results,
+                                                   TimeoutException timedOut) {
+        ModuleResult[] copy;
+        synchronized (results) {
+            copy = results.clone();
+        }
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] == null) {
+                copy[i] = ModuleResult.failure(id(idOf, batch.get(i)), timedOut, 0L);
+            }
+        }
+        return Arrays.asList(copy);
+    }
+
+    /**
+     * @return id of the item, its string form if the lookup throws, e.g. for a class without ModuleInfo
+     */
+    private static <T> String id(Function<T, String> idOf, T item) {
+        try {
+            return idOf.apply(item);
+        } catch (RuntimeException e) {
+            return String.valueOf(item);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleLoadException;
+import io.not2excel.module.loader.LoadOrderPlanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Validates, orders and applies one transition over a batch of modules, rolling back on the first failure.
+ * Always called while holding {@link ModuleCoordinator#withLifecycleLock(java.util.Collection, java.util.function.Supplier)}.
+ */
+final class BatchLifecycle {
+
+    private BatchLifecycle() {
+    }
+
+    @FunctionalInterface
+    interface Transition<M> {
+
+        void apply(M module) throws Exception;
+    }
+
+    /**
+     * Resolves loaded modules by id, rejecting the batch if any id isn't loaded
+     *
+     * @return modules, or null with the rejection added to results
+     */
+    static <M extends Module> List<M> resolve(ModuleCoordinator<M> coordinator, List<String> idList,
+                                              List<ModuleResult> results) {
+        List<M> modules = new ArrayList<>(idList.size());
+        boolean valid = true;
+        for (String id : idList) {
+            M module = coordinator.getModule(id);
+            if (module == null) {
+                results.add(ModuleResult.failure(id, new IllegalStateException("Module " + id + " not loaded."), 0L));
+                valid = false;
+            } else {
+                modules.add(module);
+            }
+        }
+        return valid ? modules : null;
+    }
+
+    /**
+     * Instantiates a batch of module classes, rejecting the batch on classes without {@link ModuleInfo},
+     * instantiation failures and duplicate ids
+     *
+     * @return modules, or null with the rejection added to results
+     */
+    static <M extends Module> List<M> instantiate(ModuleCoordinator<M> coordinator, List<Class<M>> moduleClassList,
+                                                  List<ModuleResult> results) {
+        List<M> modules = new ArrayList<>(moduleClassList.size());
+        Set<String> ids = new HashSet<>();
+        boolean valid = true;
+        for (Class<M> moduleClass : moduleClassList) {
+            ModuleInfo info = coordinator.getModuleInfo(moduleClass);
+            if (info == null) {
+                results.add(ModuleResult.failure(moduleClass.getName(),
+                        new ModuleLoadException(moduleClass.getName() + " has no @ModuleInfo."), 0L));
+                valid = false;
+                continue;
+            }
+            String id = info.id();
+            String problem = coordinator.hasModule(id) ? "Module id " + id + " already loaded."
+                    : !ids.add(id) ? "Module id " + id + " appears twice in the batch." : null;
+            if (problem != null) {
+                results.add(ModuleResult.failure(id, new ModuleLoadException(problem), 0L));
+                valid = false;
+                continue;
+            }
+            try {
+                modules.add(coordinator.instantiate(moduleClass));
+            } catch (ModuleLoadException e) {
+                results.add(ModuleResult.failure(id, e, 0L));
+                valid = false;
+            }
+        }
+        return valid ? modules : null;
+    }
+
+    /**
+     * Applies the transition in loadAfter order, or reverse order for teardown transitions
+     * On the first failure every applied transition is undone in reverse, skipped modules already were in the
+     * target state and are neither transitioned nor undone
+     */
+    static <M extends Module> BatchResult apply(ModuleCoordinator<M> coordinator, List<M> modules, boolean reverse,
+                                                Predicate<M> skip, Transition<M> transition, Transition<M> undo) {
+        Map<M, ModuleInfo> infos = new IdentityHashMap<>();
+        modules.forEach(module -> infos.put(module, coordinator.getModuleInfo(module)));
+        List<M> order = new ArrayList<>(LoadOrderPlanner.plan(modules, module -> infos.get(module).id(),
+                module -> infos.get(module).loadAfter()).getFullOrder());
+        if (reverse) {
+            Collections.reverse(order);
+        }
+        List<ModuleResult> results = new ArrayList<>(order.size());
+        List<M> applied = new ArrayList<>(order.size());
+        for (M module : order) {
+            String id = infos.get(module).id();
+            if (skip.test(module)) {
+                results.add(ModuleResult.success(id, 0L));
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                transition.apply(module);
+            } catch (Exception e) {
+                ModuleResult failure = ModuleResult.failure(id, e, System.nanoTime() - start);
+                results.add(failure);
+                for (int i = applied.size() - 1; i >= 0; i--) {
+                    try {
+                        undo.apply(applied.get(i));
+                    } catch (Exception rollback) {
+                        e.addSuppressed(rollback);
+                    }
+                }
+                return new BatchResult(results, failure, !applied.isEmpty());
+            }
+            results.add(ModuleResult.success(id, System.nanoTime() - start));
+            applied.add(module);
+        }
+        return new BatchResult(results, null, false);
+    }
+
+    static BatchResult rejected(List<ModuleResult> results) {
+        ModuleResult failure = null;
+        for (ModuleResult result : results) {
+            if (!result.isSuccess()) {
+                failure = result;
+                break;
+            }
+        }
+        return new BatchResult(results, failure, false);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated outcome of a transactional batch, see {@link ModuleCoordinator#enableBatch(List)}.
+ * A batch either applies every transition or, after the first failure, rolls back the ones already applied.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BatchResult {
+
+    private final List<ModuleResult> results;
+    private final ModuleResult failure;
+    private final boolean rolledBack;
+
+    BatchResult(List<ModuleResult> results, ModuleResult failure, boolean rolledBack) {
+        this.results = Collections.unmodifiableList(results);
+        this.failure = failure;
+        this.rolledBack = rolledBack;
+    }
+
+    /**
+     * @return true if every transition was applied
+     */
+    public boolean isSuccess() {
+        return this.failure == null;
+    }
+
+    /**
+     * @return true if transitions were applied and then undone
+     */
+    public boolean isRolledBack() {
+        return this.rolledBack;
+    }
+
+    /**
+     * @return result of every attempted transition in the order it was applied,
+     * or the validation results if the batch was rejected before applying anything
+     */
+    public List<ModuleResult> getResults() {
+        return this.results;
+    }
+
+    /**
+     * @return first failure, null on success
+     */
+    public ModuleResult getFailure() {
+        return this.failure;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[" + (this.isSuccess() ? "OK" : this.rolledBack ? "ROLLED BACK" : "REJECTED")
+                + ", " + this.results + "]";
+    }
+}
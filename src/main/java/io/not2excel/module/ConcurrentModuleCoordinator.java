@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleDisableException;
+import io.not2excel.module.exception.ModuleEnableException;
+import io.not2excel.module.exception.ModuleLoadException;
+import io.not2excel.module.exception.ModuleUnLoadException;
+import io.not2excel.util.ClassLoaderRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread safe coordinator, reads never lock and lifecycle transitions are serialized per module id.
+ * Two threads changing the same module run one after the other,
+ * changes to unrelated modules and every lookup proceed concurrently.
+ * <p/>
+ * Modules are only published once onLoad returned, the same as {@link SimpleModuleCoordinator}.
+ * A lazily registered module is instantiated by the first lookup or enable that needs it,
+ * concurrent lookups wait for it. If it fails to instantiate or load it stays registered.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ConcurrentModuleCoordinator<M extends Module> implements ModuleCoordinator<M> {
+
+    private final Class<M> baseModuleClass;
+    private final ClassLoaderRegistry classLoaderRegistry;
+    private final ConcurrentMap<String, M> moduleMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ModuleEntry<M>> classMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LazyModule<M>> lazyMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, LazyModule<M>> lazyClassMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, M> moduleView = Collections.unmodifiableMap(this.moduleMap);
+    private final List<ModuleStateListener<? super M>> stateListeners = new CopyOnWriteArrayList<>();
+    private final ModuleMetrics metrics = new ModuleMetrics();
+    private volatile Executor asyncExecutor = ModuleExecutors.getDefault();
+
+    public ConcurrentModuleCoordinator(Class<M> baseModuleClass) {
+        this(baseModuleClass, ClassLoaderRegistry.getDefault());
+    }
+
+    public ConcurrentModuleCoordinator(Class<M> baseModuleClass, ClassLoaderRegistry classLoaderRegistry) {
+        this.baseModuleClass = baseModuleClass;
+        this.classLoaderRegistry = classLoaderRegistry;
+    }
+
+    /**
+     * Lock guarding the lifecycle of one module id, kept for the coordinator's lifetime
+     * so a thread can never hold a lock that was already replaced
+     *
+     * @param id module id
+     * @return lock
+     */
+    private ReentrantLock lockFor(String id) {
+        return this.locks.computeIfAbsent(id, key -> new ReentrantLock());
+    }
+
+    /**
+     * Locks only the given modules, in sorted id order so overlapping batches can't deadlock
+     */
+    @Override
+    public <T> T withLifecycleLock(Collection<String> ids, Supplier<T> action) {
+        List<ReentrantLock> held = new ArrayList<>();
+        try {
+            for (String id : new TreeSet<>(ids)) {
+                ReentrantLock lock = this.lockFor(id);
+                lock.lock();
+                held.add(lock);
+            }
+            return action.get();
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+    }
+
+    @Override
+    public void load(M module) throws ModuleLoadException {
+        ModuleInfo info = this.getModuleInfo(module);
+        ReentrantLock lock = this.lockFor(info.id());
+        lock.lock();
+        try {
+            if (this.hasModule(module.getClass())) {
+                throw new ModuleLoadException("Module " + module.getClass().getSimpleName() + " already loaded.");
+            }
+            if (this.hasModule(info.id())) {
+                throw new ModuleLoadException("Module id " + info.id() + " of " + module.getClass().getSimpleName()
+                        + " already in use.");
+            }
+            this.install(module, info);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads a module and adds it once onLoad returned, the caller holds its id lock and checked it's not loaded
+     */
+    private void install(M module, ModuleInfo info) {
+        ModuleEntry<M> entry = new ModuleEntry<>(module, info, this.metrics);
+        entry.load();
+        this.classMap.put(module.getClass(), entry);
+        this.moduleMap.put(info.id(), module);
+        this.classLoaderRegistry.track(module.getClass());
+        entry.fire(this.stateListeners, null, ModuleState.LOADED);
+    }
+
+    @Override
+    public void register(Class<M> moduleClass) throws ModuleLoadException {
+        ModuleInfo info = this.getModuleInfo(moduleClass);
+        ReentrantLock lock = this.lockFor(info.id());
+        lock.lock();
+        try {
+            if (this.hasModule(moduleClass)) {
+                throw new ModuleLoadException("Module " + moduleClass.getSimpleName() + " already loaded.");
+            }
+            if (this.hasModule(info.id())) {
+                throw new ModuleLoadException("Module id " + info.id() + " of " + moduleClass.getSimpleName()
+                        + " already in use.");
+            }
+            LazyModule<M> lazy = new LazyModule<>(moduleClass, info);
+            this.lazyClassMap.put(moduleClass, lazy);
+            this.lazyMap.put(info.id(), lazy);
+            this.classLoaderRegistry.track(moduleClass);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Instantiates and loads a registered module, concurrent callers wait for the first one.
+     * The module is published after onLoad returned and before its registration is dropped,
+     * so a reader always finds one of the two and never a module that is still loading.
+     * A module failing to instantiate or load stays registered, the next lookup tries again.
+     * Registered modules it loads after are activated first, without holding its lock.
+     *
+     * @param lazy registration
+     * @param path ids being activated by this call, guards against loadAfter cycles
+     * @return loaded module, or null if it failed to instantiate or was unregistered meanwhile
+     */
+    private M activate(LazyModule<M> lazy, Set<String> path) {
+        String id = lazy.getId();
+        if (!path.add(id)) {
+            return null;
+        }
+        for (String dependency : lazy.getInfo().loadAfter()) {
+            LazyModule<M> dependencyLazy = this.lazyMap.get(dependency);
+            if (dependencyLazy != null) {
+                this.activate(dependencyLazy, path);
+            }
+        }
+        ReentrantLock lock = this.lockFor(id);
+        lock.lock();
+        try {
+            M module = this.moduleMap.get(id);
+            // activating means the module's own constructor or onLoad is looking it up
+            if (module != null || this.lazyMap.get(id) != lazy || lazy.isActivating()) {
+                return module;
+            }
+            ModuleEntry<M> entry;
+            lazy.setActivating(true);
+            try {
+                module = this.instantiate(lazy.getModuleClass());
+                entry = new ModuleEntry<>(module, lazy.getInfo(), this.metrics);
+                entry.load();
+            } catch (ModuleLoadException e) {
+                e.printStackTrace();
+                return null;
+            } finally {
+                lazy.setActivating(false);
+            }
+            this.classMap.put(module.getClass(), entry);
+            this.moduleMap.put(id, module);
+            this.classLoaderRegistry.track(module.getClass());
+            this.lazyMap.remove(id);
+            this.lazyClassMap.remove(lazy.getModuleClass());
+            entry.fire(this.stateListeners, null, ModuleState.LOADED);
+            return module;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private M activate(String id) {
+        LazyModule<M> lazy = this.lazyMap.get(id);
+        return lazy == null ? null : this.activate(lazy, new HashSet<>());
+    }
+
+    @Override
+    public void unload(M module) throws ModuleUnLoadException {
+        ModuleEntry<M> entry = this.classMap.get(module.getClass());
+        if (entry == null) {
+            throw new ModuleUnLoadException("Module " + module.getClass().getSimpleName() + " not loaded.");
+        }
+        this.unload(entry.getId());
+    }
+
+    @Override
+    public void unload(String id) throws ModuleUnLoadException {
+        ReentrantLock lock = this.lockFor(id);
+        lock.lock();
+        try {
+            M module = this.moduleMap.get(id);
+            LazyModule<M> lazy = module == null ? this.lazyMap.remove(id) : null;
+            if (lazy != null) {
+                this.lazyClassMap.remove(lazy.getModuleClass());
+                this.classLoaderRegistry.release(lazy.getModuleClass());
+                return;
+            }
+            if (module == null) {
+                throw new ModuleUnLoadException("Module " + id + " not loaded.");
+            }
+            ModuleEntry<M> entry = this.classMap.get(module.getClass());
+            entry.unload();
+            this.moduleMap.remove(id);
+            this.classMap.remove(module.getClass());
+            this.classLoaderRegistry.release(module.getClass());
+            entry.fire(this.stateListeners, entry.getState(), null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void enable(String id) throws ModuleEnableException {
+        this.activate(id);
+        ReentrantLock lock = this.lockFor(id);
+        lock.lock();
+        try {
+            ModuleEntry<M> entry = this.getEntry(id);
+            if (entry == null) {
+                throw new ModuleEnableException("Module " + id + " not loaded.");
+            }
+            entry.enable(this.stateListeners);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void enable(M module) throws ModuleEnableException {
+        ModuleEntry<M> entry = this.classMap.get(module.getClass());
+        if (entry == null) {
+            throw new ModuleEnableException("Module " + module.getClass().getSimpleName() + " not loaded.");
+        }
+        this.enable(entry.getId());
+    }
+
+    @Override
+    public void disable(String id) throws ModuleDisableException {
+        ReentrantLock lock = this.lockFor(id);
+        lock.lock();
+        try {
+            ModuleEntry<M> entry = this.getEntry(id);
+            if (entry == null && this.lazyMap.containsKey(id)) {
+                return;
+            }
+            if (entry == null) {
+                throw new ModuleDisableException("Module " + id + " not loaded.");
+            }
+            entry.disable(this.stateListeners);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void disable(M module) throws ModuleDisableException {
+        ModuleEntry<M> entry = this.classMap.get(module.getClass());
+        if (entry == null) {
+            throw new ModuleDisableException("Module " + module.getClass().getSimpleName() + " not loaded.");
+        }
+        this.disable(entry.getId());
+    }
+
+    private ModuleEntry<M> getEntry(String id) {
+        M module = this.moduleMap.get(id);
+        return module == null ? null : this.classMap.get(module.getClass());
+    }
+
+    @Override
+    public M getModule(String id) {
+        M module = this.moduleMap.get(id);
+        return module == null ? this.activate(id) : module;
+    }
+
+    @Override
+    public M getModule(Class<? extends Module> moduleClass) {
+        ModuleEntry<M> entry = this.classMap.get(moduleClass);
+        if (entry != null) {
+            return entry.getModule();
+        }
+        LazyModule<M> lazy = this.lazyClassMap.get(moduleClass);
+        return lazy == null ? null : this.activate(lazy, new HashSet<>());
+    }
+
+    @Override
+    public boolean hasModule(String id) {
+        return this.moduleMap.containsKey(id) || this.lazyMap.containsKey(id);
+    }
+
+    @Override
+    public boolean hasModule(Class<? extends Module> moduleClass) {
+        return this.classMap.containsKey(moduleClass) || this.lazyClassMap.containsKey(moduleClass);
+    }
+
+    /**
+     * @return live read-only view of the loaded modules, safe to iterate while modules change
+     */
+    @Override
+    public Map<String, M> getModuleList() {
+        return this.moduleView;
+    }
+
+    @Override
+    public Map<String, Class<M>> getRegisteredModules() {
+        Map<String, Class<M>> registered = new LinkedHashMap<>();
+        this.lazyMap.forEach((id, lazy) -> registered.put(id, lazy.getModuleClass()));
+        return registered;
+    }
+
+    @Override
+    public ModuleInfo getModuleInfo(M module) {
+        return this.getModuleInfo(module.getClass());
+    }
+
+    @Override
+    public ModuleInfo getModuleInfo(Class<? extends Module> moduleClass) {
+        ModuleEntry<M> entry = this.classMap.get(moduleClass);
+        if (entry != null) {
+            return entry.getInfo();
+        }
+        LazyModule<M> lazy = this.lazyClassMap.get(moduleClass);
+        return lazy == null ? moduleClass.getAnnotation(ModuleInfo.class) : lazy.getInfo();
+    }
+
+    @Override
+    public Class<M> getBaseModuleClass() {
+        return this.baseModuleClass;
+    }
+
+    /**
+     * Lock free, reads the module's atomic state
+     */
+    @Override
+    public ModuleState getState(String id) {
+        ModuleEntry<M> entry = this.getEntry(id);
+        if (entry != null) {
+            return entry.getState();
+        }
+        return this.lazyMap.containsKey(id) ? ModuleState.REGISTERED : null;
+    }
+
+    @Override
+    public void addStateListener(ModuleStateListener<? super M> listener) {
+        this.stateListeners.add(listener);
+    }
+
+    @Override
+    public void removeStateListener(ModuleStateListener<? super M> listener) {
+        this.stateListeners.remove(listener);
+    }
+
+    @Override
+    public ModuleMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    @Override
+    public ClassLoaderRegistry getClassLoaderRegistry() {
+        return this.classLoaderRegistry;
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+
+/**
+ * A registered module class that is instantiated and loaded on first use, see {@link ModuleCoordinator#register(Class)}
+ */
+final class LazyModule<M extends Module> {
+
+    private final Class<M> moduleClass;
+    private final ModuleInfo info;
+    /**
+     * true while it's being instantiated and loaded, only accessed under its id lock or by the coordinator's own thread
+     */
+    private boolean activating;
+
+    LazyModule(Class<M> moduleClass, ModuleInfo info) {
+        this.moduleClass = moduleClass;
+        this.info = info;
+    }
+
+    Class<M> getModuleClass() {
+        return this.moduleClass;
+    }
+
+    ModuleInfo getInfo() {
+        return this.info;
+    }
+
+    String getId() {
+        return this.info.id();
+    }
+
+    boolean isActivating() {
+        return this.activating;
+    }
+
+    void setActivating(boolean activating) {
+        this.activating = activating;
+    }
+}
@@ -14,43 +14,155 @@ import io.not2excel.module.exception.ModuleDisableException;
 import io.not2excel.module.exception.ModuleEnableException;
 import io.not2excel.module.exception.ModuleLoadException;
 import io.not2excel.module.exception.ModuleUnLoadException;
+import io.not2excel.util.ClassLoaderRegistry;
+import io.not2excel.util.jfr.FlightEvents;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public interface ModuleCoordinator<M extends Module> {
 
-    M instantiate(Class<M> moduleClass);
+    /**
+     * Creates a module instance through {@link ModuleInstantiator}, its constructor is resolved once per class
+     * The call is timed into {@link #getMetrics()} under the module's id and recorded as a flight recorder event
+     *
+     * @param moduleClass module class
+     * @return new, not yet loaded module
+     * @throws ModuleLoadException if the class has no usable constructor or the constructor throws
+     */
+    default M instantiate(Class<M> moduleClass) throws ModuleLoadException {
+        ModuleMetrics metrics = this.getMetrics();
+        ModuleInfo info = this.getModuleInfo(moduleClass);
+        long start = metrics == null ? 0L : metrics.start();
+        Object event = FlightEvents.beginInstantiation();
+        boolean failed = true;
+        try {
+            M module = ModuleInstantiator.instantiate(moduleClass, this);
+            failed = false;
+            return module;
+        } finally {
+            String id = info == null ? null : info.id();
+            if (metrics != null && id != null) {
+                metrics.timings(id).record(ModuleMetrics.Phase.INSTANTIATE, start, failed);
+            }
+            FlightEvents.commitInstantiation(event, id, moduleClass, failed);
+        }
+    }
 
     void load(M module) throws ModuleLoadException;
 
-    void load(Class<M> moduleClass) throws ModuleLoadException;
+    default void load(Class<M> moduleClass) throws ModuleLoadException {
+        this.load(this.instantiate(moduleClass));
+    }
 
-    void load(List<Class<M>> moduleClassList);
+    default void load(List<Class<M>> moduleClassList) {
+        moduleClassList.forEach(moduleClass -> {
+            try {
+                this.load(moduleClass);
+            } catch (ModuleLoadException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Registers a module without instantiating it, the instance is created and loaded on the first
+     * {@link #getModule(String)}, {@link #getModule(Class)} or {@link #enable(String)} of the module,
+     * right after the registered modules it loads after.
+     * Until then the module counts as loaded for {@link #hasModule(String)}, isn't part of {@link #getModuleList()},
+     * and unloading it only drops the registration. The registration keeps the class's pooled loader open,
+     * see {@link ClassLoaderRegistry#track(Class)}.
+     *
+     * @param moduleClass module class
+     * @throws ModuleLoadException if the class or its id is already loaded or registered
+     */
+    void register(Class<M> moduleClass) throws ModuleLoadException;
+
+    default void register(List<Class<M>> moduleClassList) {
+        moduleClassList.forEach(moduleClass -> {
+            try {
+                this.register(moduleClass);
+            } catch (ModuleLoadException e) {
+                e.printStackTrace();
+            }
+        });
+    }
 
     void unload(M module) throws ModuleUnLoadException;
 
-    void unload(Class<? extends Module> moduleClass);
+    default void unload(Class<? extends Module> moduleClass) {
+        M module = this.getModule(moduleClass);
+        if (module != null) {
+            try {
+                this.unload(module);
+            } catch (ModuleUnLoadException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-    void unload(List<Class<? extends Module>> moduleClassList);
+    default void unload(List<Class<? extends Module>> moduleClassList) {
+        moduleClassList.forEach(this::unload);
+    }
 
     void unload(String id) throws ModuleUnLoadException;
 
     void enable(String id) throws ModuleEnableException;
 
-    void enable(String... idList);
+    default void enable(String... idList) {
+        for (String id : idList) {
+            try {
+                this.enable(id);
+            } catch (ModuleEnableException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
     void enable(M module) throws ModuleEnableException;
 
-    void enable(List<M> moduleList);
+    default void enable(List<M> moduleList) {
+        moduleList.forEach(module -> {
+            try {
+                this.enable(module);
+            } catch (ModuleEnableException e) {
+                e.printStackTrace();
+            }
+        });
+    }
 
     void disable(String id) throws ModuleDisableException;
 
-    void disable(String... idList);
+    default void disable(String... idList) {
+        for (String id : idList) {
+            try {
+                this.disable(id);
+            } catch (ModuleDisableException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
     void disable(M module) throws ModuleDisableException;
 
-    void disable(List<M> moduleList);
+    default void disable(List<M> moduleList) {
+        moduleList.forEach(module -> {
+            try {
+                this.disable(module);
+            } catch (ModuleDisableException e) {
+                e.printStackTrace();
+            }
+        });
+    }
 
     M getModule(String id);
 
@@ -62,9 +174,184 @@ public interface ModuleCoordinator<M extends Module> {
 
     Map<String, M> getModuleList();
 
+    /**
+     * @return id -> class of every module registered through {@link #register(Class)} and not yet instantiated,
+     * a snapshot
+     */
+    Map<String, Class<M>> getRegisteredModules();
+
     ModuleInfo getModuleInfo(M module);
 
     ModuleInfo getModuleInfo(Class<? extends Module> moduleClass);
 
     Class<M> getBaseModuleClass();
+
+    /**
+     * @param id module id
+     * @return lifecycle state of the module, null if it isn't loaded or registered
+     */
+    ModuleState getState(String id);
+
+    default boolean isEnabled(String id) {
+        return this.getState(id) == ModuleState.ENABLED;
+    }
+
+    default boolean isEnabled(M module) {
+        ModuleInfo info = this.getModuleInfo(module);
+        return info != null && this.getModule(info.id()) == module && this.isEnabled(info.id());
+    }
+
+    /**
+     * @param listener listener notified of every state change from now on
+     */
+    void addStateListener(ModuleStateListener<? super M> listener);
+
+    void removeStateListener(ModuleStateListener<? super M> listener);
+
+    /**
+     * @return lifecycle timings of this coordinator's modules, null if it doesn't record any
+     */
+    default ModuleMetrics getMetrics() {
+        return null;
+    }
+
+    default ClassLoaderRegistry getClassLoaderRegistry() {
+        return ClassLoaderRegistry.getDefault();
+    }
+
+    /**
+     * Runs an action while no other lifecycle transition of the given modules can run
+     * The default locks the whole coordinator once
+     *
+     * @param ids    ids of the modules the action transitions
+     * @param action action to run
+     * @return result of the action
+     */
+    default <T> T withLifecycleLock(Collection<String> ids, Supplier<T> action) {
+        synchronized (this) {
+            return action.get();
+        }
+    }
+
+    /**
+     * Loads a batch of modules as one transaction
+     * The batch is validated up front, nothing is loaded if a module lacks {@link ModuleInfo},
+     * can't be instantiated or its id is taken.
+     * Modules load in loadAfter order, if one fails every module loaded by the batch is unloaded again.
+     *
+     * @param moduleClassList modules to load
+     * @return aggregated result
+     */
+    default BatchResult loadBatch(List<Class<M>> moduleClassList) {
+        // classes without info are rejected by the batch, there's no id to lock for them
+        List<String> ids = moduleClassList.stream().map(c -> this.getModuleInfo(c)).filter(Objects::nonNull)
+                .map(ModuleInfo::id).collect(Collectors.toList());
+        return this.withLifecycleLock(ids, () -> {
+            List<ModuleResult> rejected = new ArrayList<>();
+            List<M> modules = BatchLifecycle.instantiate(this, moduleClassList, rejected);
+            return modules == null ? BatchLifecycle.rejected(rejected)
+                    : BatchLifecycle.apply(this, modules, false, module -> false, this::load, this::unload);
+        });
+    }
+
+    /**
+     * Enables a batch of loaded modules in loadAfter order as one transaction, see {@link #loadBatch(List)}
+     * Modules already enabled succeed without a callback and are left enabled on rollback.
+     *
+     * @param idList ids of the modules to enable
+     * @return aggregated result
+     */
+    default BatchResult enableBatch(List<String> idList) {
+        return this.withLifecycleLock(idList, () -> {
+            List<ModuleResult> rejected = new ArrayList<>();
+            List<M> modules = BatchLifecycle.resolve(this, idList, rejected);
+            return modules == null ? BatchLifecycle.rejected(rejected)
+                    : BatchLifecycle.apply(this, modules, false, this::isEnabled, this::enable, this::disable);
+        });
+    }
+
+    /**
+     * Disables a batch of loaded modules in reverse loadAfter order as one transaction, see {@link #loadBatch(List)}
+     * Modules that aren't enabled succeed without a callback and are left as they are on rollback.
+     *
+     * @param idList ids of the modules to disable
+     * @return aggregated result
+     */
+    default BatchResult disableBatch(List<String> idList) {
+        return this.withLifecycleLock(idList, () -> {
+            List<ModuleResult> rejected = new ArrayList<>();
+            List<M> modules = BatchLifecycle.resolve(this, idList, rejected);
+            return modules == null ? BatchLifecycle.rejected(rejected)
+                    : BatchLifecycle.apply(this, modules, true, module -> !this.isEnabled(module), this::disable,
+                    this::enable);
+        });
+    }
+
+    /**
+     * Unloads a batch of loaded modules in reverse loadAfter order as one transaction,
+     * rolled back modules are loaded again as the same instance, see {@link #loadBatch(List)}
+     *
+     * @param idList ids of the modules to unload
+     * @return aggregated result
+     */
+    default BatchResult unloadBatch(List<String> idList) {
+        return this.withLifecycleLock(idList, () -> {
+            List<ModuleResult> rejected = new ArrayList<>();
+            List<M> modules = BatchLifecycle.resolve(this, idList, rejected);
+            return modules == null ? BatchLifecycle.rejected(rejected)
+                    : BatchLifecycle.apply(this, modules, true, module -> false, this::unload, this::load);
+        });
+    }
+
+    /**
+     * Executor the async lifecycle methods run on, see {@link ModuleExecutors#getDefault()}
+     *
+     * @return async executor
+     */
+    default Executor getAsyncExecutor() {
+        return ModuleExecutors.getDefault();
+    }
+
+    default CompletableFuture<List<ModuleResult>> loadAsync(List<Class<M>> moduleClassList) {
+        return this.loadAsync(moduleClassList, 0L, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Instantiates and loads the modules in order off the calling thread
+     * The future completes with one result per module, failures never complete it exceptionally.
+     * Once the timeout elapses it completes immediately, modules not yet done are reported as timed out.
+     *
+     * @param moduleClassList modules to load
+     * @param timeout         timeout for the whole call, 0 for none
+     * @param unit            timeout unit
+     * @return per module results in input order
+     */
+    default CompletableFuture<List<ModuleResult>> loadAsync(List<Class<M>> moduleClassList, long timeout, TimeUnit unit) {
+        return AsyncLifecycle.run(moduleClassList, moduleClass -> this.getModuleInfo(moduleClass).id(),
+                moduleClass -> this.load(this.instantiate(moduleClass)), this.getAsyncExecutor(), timeout, unit);
+    }
+
+    default CompletableFuture<List<ModuleResult>> unloadAsync(String... idList) {
+        return this.unloadAsync(Arrays.asList(idList), 0L, TimeUnit.MILLISECONDS);
+    }
+
+    default CompletableFuture<List<ModuleResult>> unloadAsync(List<String> idList, long timeout, TimeUnit unit) {
+        return AsyncLifecycle.run(idList, id -> id, this::unload, this.getAsyncExecutor(), timeout, unit);
+    }
+
+    default CompletableFuture<List<ModuleResult>> enableAsync(String... idList) {
+        return this.enableAsync(Arrays.asList(idList), 0L, TimeUnit.MILLISECONDS);
+    }
+
+    default CompletableFuture<List<ModuleResult>> enableAsync(List<String> idList, long timeout, TimeUnit unit) {
+        return AsyncLifecycle.run(idList, id -> id, this::enable, this.getAsyncExecutor(), timeout, unit);
+    }
+
+    default CompletableFuture<List<ModuleResult>> disableAsync(String... idList) {
+        return this.disableAsync(Arrays.asList(idList), 0L, TimeUnit.MILLISECONDS);
+    }
+
+    default CompletableFuture<List<ModuleResult>> disableAsync(List<String> idList, long timeout, TimeUnit unit) {
+        return AsyncLifecycle.run(idList, id -> id, this::disable, this.getAsyncExecutor(), timeout, unit);
+    }
 }
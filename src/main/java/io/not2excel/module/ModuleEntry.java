@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleDisableException;
+import io.not2excel.module.exception.ModuleEnableException;
+import io.not2excel.util.jfr.FlightEvents;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A loaded module together with its {@link ModuleInfo}, read once when the module is loaded, and its {@link ModuleState}.
+ * State changes are compare-and-set, so of two racing enables only one runs onEnable.
+ * Every callback is timed into the module's {@link ModuleMetrics} and recorded as a flight recorder event.
+ */
+final class ModuleEntry<M extends Module> {
+
+    private final M module;
+    private final ModuleInfo info;
+    private final ModuleMetrics metrics;
+    private final ModuleMetrics.Timings timings;
+    private final AtomicReference<ModuleState> state = new AtomicReference<>(ModuleState.LOADED);
+
+    ModuleEntry(M module, ModuleInfo info, ModuleMetrics metrics) {
+        this.module = module;
+        this.info = info;
+        this.metrics = metrics;
+        this.timings = metrics.timings(info.id());
+    }
+
+    M getModule() {
+        return this.module;
+    }
+
+    ModuleInfo getInfo() {
+        return this.info;
+    }
+
+    String getId() {
+        return this.info.id();
+    }
+
+    ModuleState getState() {
+        return this.state.get();
+    }
+
+    void load() {
+        this.timed(ModuleMetrics.Phase.LOAD, this.module::onLoad);
+    }
+
+    void unload() {
+        this.timed(ModuleMetrics.Phase.UNLOAD, this.module::onUnload);
+    }
+
+    private void timed(ModuleMetrics.Phase phase, Runnable callback) {
+        long start = this.metrics.start();
+        Object event = FlightEvents.beginLifecycle();
+        boolean failed = true;
+        try {
+            callback.run();
+            failed = false;
+        } finally {
+            this.timings.record(phase, start, failed);
+            FlightEvents.commitLifecycle(event, this.getId(), phase.name(), this.module.getClass(), failed);
+        }
+    }
+
+    /**
+     * Runs onEnable unless the module is already enabled or enabling
+     * A failing onEnable, whatever it throws, restores the previous state and is rethrown
+     *
+     * @return true if onEnable ran
+     */
+    boolean enable(List<ModuleStateListener<? super M>> listeners) throws ModuleEnableException {
+        ModuleState previous;
+        do {
+            previous = this.state.get();
+            if (previous == ModuleState.ENABLED || previous == ModuleState.ENABLING) {
+                return false;
+            }
+            if (previous == ModuleState.DISABLING) {
+                throw new ModuleEnableException("Module " + this.getId() + " is being disabled.");
+            }
+        } while (!this.state.compareAndSet(previous, ModuleState.ENABLING));
+        this.fire(listeners, previous, ModuleState.ENABLING);
+        boolean enabled = false;
+        try {
+            this.timed(ModuleMetrics.Phase.ENABLE, this.module::onEnable);
+            enabled = true;
+        } finally {
+            ModuleState current = enabled ? ModuleState.ENABLED : previous;
+            this.state.set(current);
+            this.fire(listeners, ModuleState.ENABLING, current);
+        }
+        return true;
+    }
+
+    /**
+     * Runs onDisable if the module is enabled
+     * A failing onDisable, whatever it throws, restores the enabled state and is rethrown
+     *
+     * @return true if onDisable ran
+     */
+    boolean disable(List<ModuleStateListener<? super M>> listeners) throws ModuleDisableException {
+        do {
+            ModuleState current = this.state.get();
+            if (current == ModuleState.ENABLING) {
+                throw new ModuleDisableException("Module " + this.getId() + " is being enabled.");
+            }
+            if (current != ModuleState.ENABLED) {
+                return false;
+            }
+        } while (!this.state.compareAndSet(ModuleState.ENABLED, ModuleState.DISABLING));
+        this.fire(listeners, ModuleState.ENABLED, ModuleState.DISABLING);
+        boolean disabled = false;
+        try {
+            this.timed(ModuleMetrics.Phase.DISABLE, this.module::onDisable);
+            disabled = true;
+        } finally {
+            ModuleState current = disabled ? ModuleState.DISABLED : ModuleState.ENABLED;
+            this.state.set(current);
+            this.fire(listeners, ModuleState.DISABLING, current);
+        }
+        return true;
+    }
+
+    void fire(List<ModuleStateListener<? super M>> listeners, ModuleState previous, ModuleState current) {
+        for (ModuleStateListener<? super M> listener : listeners) {
+            try {
+                listener.stateChanged(this.getId(), this.module, previous, current);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors backing the async lifecycle methods of {@link ModuleCoordinator}.
+ * On runtimes with virtual threads every lifecycle call gets its own virtual thread,
+ * older runtimes fall back to a cached pool of daemon threads.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ModuleExecutors {
+
+    private ModuleExecutors() {
+    }
+
+    /**
+     * @return shared executor, virtual threads when the runtime supports them
+     */
+    public static ExecutorService getDefault() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    /**
+     * Creates a virtual thread per task executor through reflection, so this library still runs on Java 8
+     *
+     * @return new executor, or null if the runtime has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Single daemon thread firing call timeouts, it never runs lifecycle callbacks
+     *
+     * @return timeout scheduler
+     */
+    static ScheduledExecutorService getTimeoutScheduler() {
+        return TimeoutHolder.SCHEDULER;
+    }
+
+    private static final class DefaultHolder {
+
+        private static final ExecutorService EXECUTOR = create();
+
+        private static ExecutorService create() {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            AtomicInteger threadIds = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "module-lifecycle-" + threadIds.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static final class TimeoutHolder {
+
+        private static final ScheduledExecutorService SCHEDULER = create();
+
+        private static ScheduledExecutorService create() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "module-lifecycle-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
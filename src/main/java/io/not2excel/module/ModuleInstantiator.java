@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import io.not2excel.module.annotation.ModuleConstructor;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleLoadException;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Instantiates modules through a factory resolved once per class.
+ * The constructor is the one annotated with {@link ModuleConstructor}, otherwise the no-arg constructor,
+ * it may have any visibility. Public constructors of classes on the module-api class path are called through a
+ * {@link LambdaMetafactory} generated factory, others, including every class of a module jar loader,
+ * through their {@link MethodHandle}. Resolution results, failures included, are cached in a {@link ClassValue},
+ * so the cache never keeps a module class loader alive.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ModuleInstantiator {
+
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Module.class, ModuleCoordinator.class);
+
+    private static final ClassValue<Factory> FACTORIES = new ClassValue<Factory>() {
+        @Override
+        protected Factory computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    private ModuleInstantiator() {
+    }
+
+    /**
+     * @param moduleClass module class
+     * @param coordinator coordinator handed to a {@link ModuleConstructor} taking one
+     * @return new module instance
+     * @throws ModuleLoadException if the class has no usable constructor or the constructor throws anything
+     *                             but a {@link VirtualMachineError}
+     * @since 1.0.0
+     */
+    public static <M extends Module> M instantiate(Class<M> moduleClass, ModuleCoordinator<?> coordinator)
+            throws ModuleLoadException {
+        Factory factory = FACTORIES.get(moduleClass);
+        if (factory.creator == null) {
+            throw new ModuleLoadException("Module " + moduleClass.getName() + " can't be instantiated: " + factory.problem);
+        }
+        try {
+            return moduleClass.cast(factory.creator.apply(coordinator));
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable t) {
+            // spun factories rethrow checked exceptions of the constructor as they are
+            throw new ModuleLoadException("Module " + moduleClass.getName() + " constructor failed.", t);
+        }
+    }
+
+    private static Factory resolve(Class<?> type) {
+        if (!Module.class.isAssignableFrom(type)) {
+            return new Factory(null, "not a Module");
+        }
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return new Factory(null, "abstract");
+        }
+        if (type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers())) {
+            return new Factory(null, "inner classes need their outer instance");
+        }
+        try {
+            Constructor<?> constructor = null;
+            for (Constructor<?> candidate : type.getDeclaredConstructors()) {
+                if (candidate.isAnnotationPresent(ModuleConstructor.class)) {
+                    if (constructor != null) {
+                        return new Factory(null, "more than one @ModuleConstructor");
+                    }
+                    constructor = candidate;
+                }
+            }
+            boolean takesCoordinator = false;
+            if (constructor == null) {
+                constructor = type.getDeclaredConstructor();
+            } else if (constructor.getParameterCount() == 1
+                    && constructor.getParameterTypes()[0].isAssignableFrom(ModuleCoordinator.class)) {
+                takesCoordinator = true;
+            } else if (constructor.getParameterCount() != 0) {
+                return new Factory(null, "@ModuleConstructor must take no parameters or a ModuleCoordinator");
+            }
+            constructor.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+            Function<ModuleCoordinator<?>, Module> creator = isVisible(type) ? spin(handle, takesCoordinator) : null;
+            if (creator == null) {
+                MethodHandle exact = (takesCoordinator ? handle
+                        : MethodHandles.dropArguments(handle, 0, ModuleCoordinator.class)).asType(FACTORY_TYPE);
+                creator = coordinator -> {
+                    try {
+                        return (Module) exact.invokeExact(coordinator);
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable t) {
+                        throw new UndeclaredThrowableException(t);
+                    }
+                };
+            }
+            return new Factory(creator, null);
+        } catch (NoSuchMethodException e) {
+            return new Factory(null, "no no-arg or @ModuleConstructor constructor");
+        } catch (IllegalAccessException | SecurityException e) {
+            return new Factory(null, e.toString());
+        }
+    }
+
+    /**
+     * Spun lambdas are defined next to this class and reference the module class by name,
+     * so they only work for classes this class's loader resolves to the same class
+     */
+    private static boolean isVisible(Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, ModuleInstantiator.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Spins a lambda calling the constructor directly, so the JIT sees a plain allocation
+     * Only possible for constructors accessible from here, i.e. public ones of public classes, of visible classes
+     *
+     * @return creator, or null if the constructor isn't accessible
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<ModuleCoordinator<?>, Module> spin(MethodHandle constructor, boolean takesCoordinator) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            if (takesCoordinator) {
+                return (Function<ModuleCoordinator<?>, Module>) LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+                        constructor, constructor.type().changeReturnType(Module.class)
+                                .changeParameterType(0, ModuleCoordinator.class)).getTarget().invokeExact();
+            }
+            Supplier<Module> supplier = (Supplier<Module>) LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                    constructor, MethodType.methodType(Module.class)).getTarget().invokeExact();
+            return coordinator -> supplier.get();
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static final class Factory {
+
+        private final Function<ModuleCoordinator<?>, Module> creator;
+        private final String problem;
+
+        Factory(Function<ModuleCoordinator<?>, Module> creator, String problem) {
+            this.creator = creator;
+            this.problem = problem;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lifecycle timings of a coordinator's modules, keyed by module id so they survive unloads and reloads.
+ * Every instantiation and lifecycle callback is timed with {@link System#nanoTime()} and recorded lock free
+ * into a per module, per phase histogram of power of two buckets, a recording is two clock reads and a few atomic adds.
+ * <p/>
+ * {@link #snapshot()} reads the current values, {@link #registerMBean(String)} publishes them as an MXBean.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ModuleMetrics implements ModuleMetricsMXBean {
+
+    /**
+     * bucket i counts durations of [2^i, 2^(i+1)) nanoseconds, the last one everything from about 2 seconds up
+     */
+    public static final int BUCKETS = 32;
+
+    public static final String DOMAIN = "io.not2excel.module";
+
+    private final ConcurrentMap<String, Timings> modules = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+    private ObjectName objectName;
+
+    /**
+     * Timed lifecycle phase
+     */
+    public enum Phase {
+        INSTANTIATE,
+        LOAD,
+        ENABLE,
+        DISABLE,
+        UNLOAD
+    }
+
+    /**
+     * @param id module id
+     * @return timings of the module, created on first use
+     */
+    Timings timings(String id) {
+        Timings timings = this.modules.get(id);
+        return timings != null ? timings : this.modules.computeIfAbsent(id, Timings::new);
+    }
+
+    /**
+     * @return clock value to pass to {@link Timings#record(Phase, long, boolean)}, 0 while disabled
+     */
+    long start() {
+        return this.enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * @param id    module id
+     * @param phase phase
+     * @return statistics of the phase, null if it never ran
+     */
+    public Statistics snapshot(String id, Phase phase) {
+        Timings timings = this.modules.get(id);
+        return timings == null ? null : timings.snapshot(phase);
+    }
+
+    /**
+     * @return statistics of every module and phase that ran, ordered by id and phase
+     */
+    public List<Statistics> snapshot() {
+        List<Statistics> statistics = new ArrayList<>();
+        for (Timings timings : this.modules.values()) {
+            for (Phase phase : Phase.values()) {
+                Statistics phaseStatistics = timings.snapshot(phase);
+                if (phaseStatistics != null) {
+                    statistics.add(phaseStatistics);
+                }
+            }
+        }
+        statistics.sort(Comparator.comparing(Statistics::getModuleId).thenComparing(Statistics::getPhase));
+        return statistics;
+    }
+
+    /**
+     * @param phase phase
+     * @param limit maximum number of modules
+     * @return statistics of the modules that spent the most time in the phase, slowest first
+     */
+    public List<Statistics> slowest(Phase phase, int limit) {
+        List<Statistics> statistics = new ArrayList<>();
+        for (Timings timings : this.modules.values()) {
+            Statistics phaseStatistics = timings.snapshot(phase);
+            if (phaseStatistics != null) {
+                statistics.add(phaseStatistics);
+            }
+        }
+        statistics.sort(Comparator.comparingLong(Statistics::getTotalNanos).reversed());
+        return statistics.size() > limit ? new ArrayList<>(statistics.subList(0, Math.max(0, limit))) : statistics;
+    }
+
+    @Override
+    public List<Statistics> getStatistics() {
+        return this.snapshot();
+    }
+
+    @Override
+    public List<Statistics> getSlowest(String phase, int limit) {
+        return this.slowest(Phase.valueOf(phase), limit);
+    }
+
+    @Override
+    public int getModuleCount() {
+        return this.modules.size();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void reset() {
+        this.modules.values().forEach(Timings::clear);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as "io.not2excel.module:type=ModuleMetrics,name=&lt;name&gt;"
+     *
+     * @param name name distinguishing this coordinator from others in the same JVM
+     * @return registered name
+     * @throws JMException if the name is invalid or already taken
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        this.unregisterMBean();
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=ModuleMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.objectName = objectName;
+        return objectName;
+    }
+
+    /**
+     * Removes the MBean registered by {@link #registerMBean(String)}, if any
+     *
+     * @throws JMException if the MBean server rejects it
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (this.objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(this.objectName)) {
+                server.unregisterMBean(this.objectName);
+            }
+            this.objectName = null;
+        }
+    }
+
+    public synchronized ObjectName getObjectName() {
+        return this.objectName;
+    }
+
+    /**
+     * Timings of a single module, phases are allocated on their first recording
+     */
+    static final class Timings {
+
+        private final String id;
+        private final AtomicReferenceArray<Recorder> phases = new AtomicReferenceArray<>(Phase.values().length);
+
+        Timings(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @param phase  phase that ran
+         * @param start  value of {@link ModuleMetrics#start()} before it ran, 0 skips the recording
+         * @param failed true if it threw
+         */
+        void record(Phase phase, long start, boolean failed) {
+            if (start == 0L) {
+                return;
+            }
+            long nanos = System.nanoTime() - start;
+            Recorder recorder = this.phases.get(phase.ordinal());
+            if (recorder == null) {
+                this.phases.compareAndSet(phase.ordinal(), null, new Recorder());
+                recorder = this.phases.get(phase.ordinal());
+            }
+            recorder.record(nanos, failed);
+        }
+
+        /**
+         * Drops the recorded phases, the loaded module keeps recording into this instance
+         */
+        void clear() {
+            for (int i = 0; i < this.phases.length(); i++) {
+                this.phases.set(i, null);
+            }
+        }
+
+        Statistics snapshot(Phase phase) {
+            Recorder recorder = this.phases.get(phase.ordinal());
+            return recorder == null ? null : recorder.snapshot(this.id, phase);
+        }
+    }
+
+    private static final class Recorder {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile long lastNanos;
+
+        void record(long nanos, boolean failed) {
+            nanos = Math.max(0L, nanos);
+            this.buckets.incrementAndGet(nanos == 0L ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos)));
+            this.totalNanos.add(nanos);
+            if (failed) {
+                this.failures.increment();
+            }
+            long max = this.maxNanos.get();
+            while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+                max = this.maxNanos.get();
+            }
+            this.lastNanos = nanos;
+        }
+
+        Statistics snapshot(String id, Phase phase) {
+            long[] histogram = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = this.buckets.get(i);
+                count += histogram[i];
+            }
+            return new Statistics(id, phase, count, this.failures.sum(), this.totalNanos.sum(), this.maxNanos.get(),
+                    this.lastNanos, histogram);
+        }
+    }
+
+    /**
+     * Point in time statistics of one phase of one module, the counters are read one after the other
+     * so a snapshot taken during a recording may be off by that recording
+     */
+    public static final class Statistics {
+
+        private final String moduleId;
+        private final Phase phase;
+        private final long count;
+        private final long failures;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long lastNanos;
+        private final long[] histogram;
+
+        Statistics(String moduleId, Phase phase, long count, long failures, long totalNanos, long maxNanos,
+                   long lastNanos, long[] histogram) {
+            this.moduleId = moduleId;
+            this.phase = phase;
+            this.count = count;
+            this.failures = failures;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.lastNanos = lastNanos;
+            this.histogram = histogram;
+        }
+
+        public String getModuleId() {
+            return this.moduleId;
+        }
+
+        public Phase getPhase() {
+            return this.phase;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return runs that threw, included in every other figure
+         */
+        public long getFailures() {
+            return this.failures;
+        }
+
+        public long getTotalNanos() {
+            return this.totalNanos;
+        }
+
+        public long getMeanNanos() {
+            return this.count == 0 ? 0 : this.totalNanos / this.count;
+        }
+
+        public long getMaxNanos() {
+            return this.maxNanos;
+        }
+
+        public long getLastNanos() {
+            return this.lastNanos;
+        }
+
+        public long getP50Nanos() {
+            return this.percentileNanos(0.5);
+        }
+
+        public long getP90Nanos() {
+            return this.percentileNanos(0.9);
+        }
+
+        public long getP99Nanos() {
+            return this.percentileNanos(0.99);
+        }
+
+        /**
+         * Estimates a percentile from the histogram as the upper bound of its bucket, capped at the maximum,
+         * so it's never below the true value and at most twice as high
+         *
+         * @param percentile 0 to 1
+         * @return duration in nanoseconds
+         */
+        public long percentileNanos(double percentile) {
+            long rank = Math.max(1L, (long) Math.ceil(percentile * this.count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                seen += this.histogram[i];
+                if (seen >= rank) {
+                    return Math.min((2L << i) - 1, this.maxNanos);
+                }
+            }
+            return this.maxNanos;
+        }
+
+        /**
+         * @return run counts per power of two bucket, see {@link ModuleMetrics#BUCKETS}
+         */
+        public long[] getHistogram() {
+            return this.histogram.clone();
+        }
+
+        @Override
+        public String toString() {
+            return this.moduleId + " " + this.phase + ": count=" + this.count + ", failures=" + this.failures
+                    + ", total=" + this.totalNanos / 1000 + "us, mean=" + this.getMeanNanos() / 1000
+                    + "us, p99=" + this.getP99Nanos() / 1000 + "us, max=" + this.maxNanos / 1000 + "us";
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link ModuleMetrics}, statistics are exposed as composite data
+ * so any JMX client can read them without module-api on its classpath.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public interface ModuleMetricsMXBean {
+
+    /**
+     * @return statistics of every module and phase that ran, ordered by id and phase
+     */
+    List<ModuleMetrics.Statistics> getStatistics();
+
+    /**
+     * @param phase INSTANTIATE, LOAD, ENABLE, DISABLE or UNLOAD
+     * @param limit maximum number of modules
+     * @return modules that spent the most time in the phase, slowest first
+     */
+    List<ModuleMetrics.Statistics> getSlowest(String phase, int limit);
+
+    /**
+     * @return number of module ids with recorded timings
+     */
+    int getModuleCount();
+
+    boolean isEnabled();
+
+    /**
+     * @param enabled false stops recording, the clock isn't read either
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Drops every recorded timing
+     */
+    void reset();
+}
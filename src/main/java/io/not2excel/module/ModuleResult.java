@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of one lifecycle step of one module, as completed by the async methods of {@link ModuleCoordinator}
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ModuleResult {
+
+    private final String id;
+    private final Throwable error;
+    private final long durationNanos;
+
+    private ModuleResult(String id, Throwable error, long durationNanos) {
+        this.id = id;
+        this.error = error;
+        this.durationNanos = durationNanos;
+    }
+
+    public static ModuleResult success(String id, long durationNanos) {
+        return new ModuleResult(id, null, durationNanos);
+    }
+
+    public static ModuleResult failure(String id, Throwable error, long durationNanos) {
+        return new ModuleResult(id, error, durationNanos);
+    }
+
+    /**
+     * @return module id
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    public boolean isSuccess() {
+        return this.error == null;
+    }
+
+    /**
+     * @return cause of the failure, a {@link java.util.concurrent.TimeoutException} if the step wasn't done
+     * because the call timed out, null on success
+     */
+    public Throwable getError() {
+        return this.error;
+    }
+
+    public long getDuration(TimeUnit unit) {
+        return unit.convert(this.durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return this.id + (this.isSuccess() ? " OK" : " FAILED: " + this.error) + " ("
+                + TimeUnit.NANOSECONDS.toMillis(this.durationNanos) + "ms)";
+    }
+}
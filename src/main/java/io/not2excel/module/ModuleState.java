@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+/**
+ * Lifecycle state of a loaded module, tracked by the coordinator.
+ * A lazily registered module is REGISTERED until first used, a loaded module starts LOADED, enable moves it through ENABLING to ENABLED and disable through DISABLING to DISABLED.
+ * Enabling an enabled module or disabling a module that isn't enabled does nothing.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public enum ModuleState {
+
+    /**
+     * registered lazily, not instantiated yet, listeners are first notified once it's loaded
+     */
+    REGISTERED,
+    /**
+     * onLoad completed, never enabled
+     */
+    LOADED,
+    /**
+     * onEnable is running
+     */
+    ENABLING,
+    ENABLED,
+    /**
+     * onDisable is running
+     */
+    DISABLING,
+    DISABLED;
+
+    /**
+     * @return true while a lifecycle callback is running
+     */
+    public boolean isTransitioning() {
+        return this == ENABLING || this == DISABLING;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module;
+
+import io.not2excel.module.context.Module;
+
+/**
+ * Notified of every module state change, on the thread making the change.
+ * Listeners should return quickly, exceptions they throw are reported and otherwise ignored.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface ModuleStateListener<M extends Module> {
+
+    /**
+     * @param id       module id
+     * @param module   module
+     * @param previous state before the change, null if the module was just loaded
+     * @param current  state after the change, null if the module was unloaded
+     */
+    void stateChanged(String id, M module, ModuleState previous, ModuleState current);
+}
@@ -14,93 +14,164 @@ import io.not2excel.module.exception.ModuleDisableException;
 import io.not2excel.module.exception.ModuleEnableException;
 import io.not2excel.module.exception.ModuleLoadException;
 import io.not2excel.module.exception.ModuleUnLoadException;
+import io.not2excel.util.ClassLoaderRegistry;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 public class SimpleModuleCoordinator<M extends Module> implements ModuleCoordinator<M> {
 
     private Class<M> baseModuleClass;
     private Map<String, M> moduleMap;
+    private Map<Class<?>, ModuleEntry<M>> classMap;
+    private Map<String, LazyModule<M>> lazyMap;
+    private Map<Class<?>, LazyModule<M>> lazyClassMap;
+    private ClassLoaderRegistry classLoaderRegistry;
+    private final ModuleMetrics metrics = new ModuleMetrics();
+    private Executor asyncExecutor = ModuleExecutors.getDefault();
+    private final List<ModuleStateListener<? super M>> stateListeners = new CopyOnWriteArrayList<>();
 
     public SimpleModuleCoordinator(Class<M> baseModuleClass) {
-        moduleMap = new HashMap<>();
-        this.baseModuleClass = baseModuleClass;
+        this(baseModuleClass, ClassLoaderRegistry.getDefault());
     }
 
-    @Override
-    public M instantiate(Class<M> moduleClass) {
-        try {
-            return moduleClass.newInstance();
-        } catch (InstantiationException | IllegalAccessException e) {
-            e.printStackTrace();
-        }
-        return null;
+    public SimpleModuleCoordinator(Class<M> baseModuleClass, ClassLoaderRegistry classLoaderRegistry) {
+        moduleMap = new HashMap<>();
+        classMap = new HashMap<>();
+        lazyMap = new HashMap<>();
+        lazyClassMap = new HashMap<>();
+        this.baseModuleClass = baseModuleClass;
+        this.classLoaderRegistry = classLoaderRegistry;
     }
 
     @Override
     public void load(M module) throws ModuleLoadException {
         if (!this.hasModule(module.getClass())) {
             ModuleInfo info = this.getModuleInfo(module);
-            this.moduleMap.put(info.id(), module);
-            module.onLoad();
+            if (this.hasModule(info.id())) {
+                throw new ModuleLoadException("Module id " + info.id() + " of " + module.getClass().getSimpleName()
+                        + " already in use.");
+            }
+            this.install(module, info);
         }
         else {
             throw new ModuleLoadException("Module " + module.getClass().getSimpleName() + " already loaded.");
         }
     }
 
+    /**
+     * Loads a module and only adds it once onLoad returned, a module failing to load is never added
+     */
+    private void install(M module, ModuleInfo info) {
+        ModuleEntry<M> entry = new ModuleEntry<>(module, info, this.metrics);
+        entry.load();
+        this.publish(module, entry);
+        entry.fire(this.stateListeners, null, ModuleState.LOADED);
+    }
+
+    private void publish(M module, ModuleEntry<M> entry) {
+        this.moduleMap.put(entry.getId(), module);
+        this.classMap.put(module.getClass(), entry);
+        this.classLoaderRegistry.track(module.getClass());
+    }
+
     @Override
-    public void load(Class<M> moduleClass) {
+    public void register(Class<M> moduleClass) throws ModuleLoadException {
+        if (!this.hasModule(moduleClass)) {
+            ModuleInfo info = this.getModuleInfo(moduleClass);
+            if (this.hasModule(info.id())) {
+                throw new ModuleLoadException("Module id " + info.id() + " of " + moduleClass.getSimpleName()
+                        + " already in use.");
+            }
+            LazyModule<M> lazy = new LazyModule<>(moduleClass, info);
+            this.lazyMap.put(info.id(), lazy);
+            this.lazyClassMap.put(moduleClass, lazy);
+            this.classLoaderRegistry.track(moduleClass);
+        }
+        else {
+            throw new ModuleLoadException("Module " + moduleClass.getSimpleName() + " already loaded.");
+        }
+    }
+
+    /**
+     * Instantiates and loads a registered module after the registered modules it loads after
+     * Its registration is only dropped once onLoad returned, a module failing to instantiate or load stays registered.
+     *
+     * @param lazy registration
+     * @param path ids being activated by this call, guards against loadAfter cycles
+     * @return loaded module, or null if it failed to instantiate or is looking itself up while loading
+     */
+    private M activate(LazyModule<M> lazy, Set<String> path) {
+        if (!path.add(lazy.getId())) {
+            return null;
+        }
+        for (String dependency : lazy.getInfo().loadAfter()) {
+            LazyModule<M> dependencyLazy = this.lazyMap.get(dependency);
+            if (dependencyLazy != null) {
+                this.activate(dependencyLazy, path);
+            }
+        }
+        // activating means the module's own constructor or onLoad is looking it up
+        if (this.lazyMap.get(lazy.getId()) != lazy || lazy.isActivating()) {
+            return this.moduleMap.get(lazy.getId());
+        }
         M module;
+        ModuleEntry<M> entry;
+        lazy.setActivating(true);
         try {
-            module = instantiate(moduleClass);
-            this.load(module);
+            module = this.instantiate(lazy.getModuleClass());
+            entry = new ModuleEntry<>(module, lazy.getInfo(), this.metrics);
+            entry.load();
         } catch (ModuleLoadException e) {
             e.printStackTrace();
+            return null;
+        } finally {
+            lazy.setActivating(false);
         }
+        this.publish(module, entry);
+        this.lazyMap.remove(lazy.getId());
+        this.lazyClassMap.remove(lazy.getModuleClass());
+        entry.fire(this.stateListeners, null, ModuleState.LOADED);
+        return module;
     }
 
-    @Override
-    public void load(List<Class<M>> moduleClassList) {
-        moduleClassList.forEach(this::load);
+    private M activate(String id) {
+        LazyModule<M> lazy = this.lazyMap.get(id);
+        return lazy == null ? null : this.activate(lazy, new HashSet<>());
     }
 
     @Override
     public void unload(M module) throws ModuleUnLoadException {
-        if (this.hasModule(module.getClass())) {
-            ModuleInfo info = this.getModuleInfo(module);
-            this.unload(info.id());
+        ModuleEntry<M> entry = this.classMap.get(module.getClass());
+        if (entry != null) {
+            this.unload(entry.getId());
         }
         else {
             throw new ModuleUnLoadException("Module " + module.getClass().getSimpleName() + " not loaded.");
         }
     }
 
-    @Override
-    public void unload(Class<? extends Module> moduleClass) {
-        M module = this.getModule(moduleClass);
-        if (module != null) {
-            try {
-                this.unload(module);
-            } catch (ModuleUnLoadException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    @Override
-    public void unload(List<Class<? extends Module>> moduleClassList) {
-        moduleClassList.forEach(this::unload);
-    }
-
     @Override
     public void unload(String id) throws ModuleUnLoadException {
-        if(this.moduleMap.containsKey(id)) {
+        if(this.lazyMap.containsKey(id)) {
+            Class<M> moduleClass = this.lazyMap.remove(id).getModuleClass();
+            this.lazyClassMap.remove(moduleClass);
+            this.classLoaderRegistry.release(moduleClass);
+        }
+        else if(this.moduleMap.containsKey(id)) {
             M module = this.moduleMap.get(id);
-            module.onUnload();
+            ModuleEntry<M> entry = this.classMap.get(module.getClass());
+            entry.unload();
             this.moduleMap.remove(id);
+            this.classMap.remove(module.getClass());
+            this.classLoaderRegistry.release(module.getClass());
+            entry.fire(this.stateListeners, entry.getState(), null);
         }
         else {
             throw new ModuleUnLoadException("Module " + id + " not loaded.");
@@ -109,119 +180,75 @@ public class SimpleModuleCoordinator<M extends Module> implements ModuleCoordina
 
     @Override
     public void enable(String id) throws ModuleEnableException {
-        if(this.moduleMap.containsKey(id)) {
-            M module = this.moduleMap.get(id);
-            module.onEnable();
+        this.activate(id);
+        ModuleEntry<M> entry = this.getEntry(id);
+        if(entry != null) {
+            entry.enable(this.stateListeners);
         } else {
             throw new ModuleEnableException("Module " + id + " not loaded.");
         }
     }
 
-    @Override
-    public void enable(String... idList) {
-        for(String id : idList) {
-            try {
-                this.enable(id);
-            } catch (ModuleEnableException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
     @Override
     public void enable(M module) throws ModuleEnableException {
-        if(this.hasModule(module.getClass())) {
-            module.onEnable();
+        ModuleEntry<M> entry = this.classMap.get(module.getClass());
+        if(entry != null) {
+            entry.enable(this.stateListeners);
         } else {
             throw new ModuleEnableException("Module " + module.getClass().getSimpleName() + " not loaded.");
         }
     }
 
-    @Override
-    public void enable(List<M> moduleList) {
-        moduleList.forEach((module) -> {
-            try {
-                this.enable(module);
-            } catch (ModuleEnableException e) {
-                e.printStackTrace();
-            }
-        });
-    }
-
     @Override
     public void disable(String id) throws ModuleDisableException {
-        if(this.moduleMap.containsKey(id)) {
-            M module = this.moduleMap.get(id);
-            module.onDisable();
-        } else {
+        ModuleEntry<M> entry = this.getEntry(id);
+        if(entry != null) {
+            entry.disable(this.stateListeners);
+        } else if(!this.lazyMap.containsKey(id)) {
             throw new ModuleDisableException("Module " + id+ " not loaded.");
         }
     }
 
-    @Override
-    public void disable(String... idList) {
-        for(String id : idList) {
-            try {
-                this.disable(id);
-            } catch (ModuleDisableException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
     @Override
     public void disable(M module) throws ModuleDisableException {
-        if(this.hasModule(module.getClass())) {
-            module.onEnable();
+        ModuleEntry<M> entry = this.classMap.get(module.getClass());
+        if(entry != null) {
+            entry.disable(this.stateListeners);
         } else {
             throw new ModuleDisableException("Module " + module.getClass().getSimpleName() + " not loaded.");
         }
     }
 
-    @Override
-    public void disable(List<M> moduleList) {
-        moduleList.forEach((module) -> {
-            try {
-                this.disable(module);
-            } catch (ModuleDisableException e) {
-                e.printStackTrace();
-            }
-        });
+    private ModuleEntry<M> getEntry(String id) {
+        M module = this.moduleMap.get(id);
+        return module == null ? null : this.classMap.get(module.getClass());
     }
 
     @Override
     public M getModule(String id) {
-        return this.moduleMap.get(id);
+        M module = this.moduleMap.get(id);
+        return module == null ? this.activate(id) : module;
     }
 
     @Override
     public M getModule(Class<? extends Module> moduleClass) {
-        M module = null;
-        for (M m : this.moduleMap.values()) {
-            if (m.getClass().equals(moduleClass)) {
-                module = m;
-                break;
-            }
+        ModuleEntry<M> entry = this.classMap.get(moduleClass);
+        if (entry != null) {
+            return entry.getModule();
         }
-        return module;
+        LazyModule<M> lazy = this.lazyClassMap.get(moduleClass);
+        return lazy == null ? null : this.activate(lazy, new HashSet<>());
     }
 
 
     @Override
     public boolean hasModule(String id) {
-        return this.moduleMap.containsKey(id);
+        return this.moduleMap.containsKey(id) || this.lazyMap.containsKey(id);
     }
 
     @Override
     public boolean hasModule(Class<? extends Module> moduleClass) {
-        boolean hasModule = false;
-        for (M m : this.moduleMap.values()) {
-            if (m.getClass().equals(moduleClass)) {
-                hasModule = true;
-                break;
-            }
-        }
-        return hasModule;
+        return this.classMap.containsKey(moduleClass) || this.lazyClassMap.containsKey(moduleClass);
     }
 
     @Override
@@ -229,18 +256,68 @@ public class SimpleModuleCoordinator<M extends Module> implements ModuleCoordina
         return this.moduleMap;
     }
 
+    @Override
+    public Map<String, Class<M>> getRegisteredModules() {
+        Map<String, Class<M>> registered = new LinkedHashMap<>();
+        this.lazyMap.forEach((id, lazy) -> registered.put(id, lazy.getModuleClass()));
+        return registered;
+    }
+
     @Override
     public ModuleInfo getModuleInfo(M module) {
-        return module.getClass().getAnnotation(ModuleInfo.class);
+        return this.getModuleInfo(module.getClass());
     }
 
     @Override
     public ModuleInfo getModuleInfo(Class<? extends Module> moduleClass) {
-        return moduleClass.getAnnotation(ModuleInfo.class);
+        ModuleEntry<M> entry = this.classMap.get(moduleClass);
+        if (entry != null) {
+            return entry.getInfo();
+        }
+        LazyModule<M> lazy = this.lazyClassMap.get(moduleClass);
+        return lazy == null ? moduleClass.getAnnotation(ModuleInfo.class) : lazy.getInfo();
     }
 
     @Override
     public Class<M> getBaseModuleClass() {
         return this.baseModuleClass;
     }
+
+    @Override
+    public ModuleState getState(String id) {
+        ModuleEntry<M> entry = this.getEntry(id);
+        if (entry != null) {
+            return entry.getState();
+        }
+        return this.lazyMap.containsKey(id) ? ModuleState.REGISTERED : null;
+    }
+
+    @Override
+    public void addStateListener(ModuleStateListener<? super M> listener) {
+        this.stateListeners.add(listener);
+    }
+
+    @Override
+    public void removeStateListener(ModuleStateListener<? super M> listener) {
+        this.stateListeners.remove(listener);
+    }
+
+    @Override
+    public ModuleMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    @Override
+    public ClassLoaderRegistry getClassLoaderRegistry() {
+        return this.classLoaderRegistry;
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
 }
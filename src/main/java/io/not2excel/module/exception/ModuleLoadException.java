@@ -13,4 +13,8 @@ public class ModuleLoadException extends Exception {
     public ModuleLoadException(String msg) {
         super(msg);
     }
+
+    public ModuleLoadException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
 }
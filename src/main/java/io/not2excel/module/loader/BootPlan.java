@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.loader;
+
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.util.ClassEnumerator;
+import io.not2excel.util.ClassLoaderRegistry;
+import io.not2excel.util.Reflections;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled boot order of a module directory, persisted next to it as "&lt;directory&gt;.bootplan".
+ * Holds the module class names in load order with their ids, loadAfter edges and owning jar.
+ * The plan is keyed by a fingerprint of the directory's jars (path, size, modification time)
+ * and the module-api version, a matching plan loads its classes by name without scanning, sorting
+ * or reading annotations.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class BootPlan {
+
+    public static final String FILE_SUFFIX = ".bootplan";
+
+    private static final int MAGIC = 0x4D414250; // MABP
+    private static final int FORMAT_VERSION = 1;
+
+    private final String fingerprint;
+    private final List<String> locations;
+    private final List<Entry> entries;
+
+    private BootPlan(String fingerprint, List<String> locations, List<Entry> entries) {
+        this.fingerprint = fingerprint;
+        this.locations = Collections.unmodifiableList(locations);
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @param directory module directory
+     * @return plan file stored next to the directory
+     */
+    public static File fileFor(File directory) {
+        File absolute = directory.getAbsoluteFile();
+        return new File(absolute.getParentFile(), absolute.getName() + FILE_SUFFIX);
+    }
+
+    /**
+     * Fingerprints the module set of a directory from its jar listing, no jar is opened
+     *
+     * @param directory module directory
+     * @return hex encoded fingerprint
+     */
+    public static String fingerprint(File directory) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((FORMAT_VERSION + "|" + ClassEnumerator.getApiVersion()).getBytes(StandardCharsets.UTF_8));
+        for (File jar : ClassEnumerator.listJars(directory)) {
+            digest.update(("\n" + jar.getAbsolutePath() + "|" + jar.length() + "|" + jar.lastModified())
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Builds a plan from modules already in load order
+     *
+     * @param fingerprint   fingerprint of the module set
+     * @param moduleClasses module classes in load order
+     * @return boot plan
+     */
+    public static <M extends Module> BootPlan of(String fingerprint, List<Class<M>> moduleClasses) {
+        Map<String, Integer> locationIndex = new LinkedHashMap<>();
+        List<ModuleInfo> infos = new ArrayList<>(moduleClasses.size());
+        Map<String, Integer> idIndex = new HashMap<>(moduleClasses.size() * 2);
+        for (Class<M> moduleClass : moduleClasses) {
+            ModuleInfo info = Reflections.getAnnotation(moduleClass, ModuleInfo.class);
+            idIndex.putIfAbsent(info.id(), infos.size());
+            infos.add(info);
+        }
+        List<Entry> entries = new ArrayList<>(moduleClasses.size());
+        for (int i = 0; i < moduleClasses.size(); i++) {
+            ModuleInfo info = infos.get(i);
+            int[] loadAfter = new int[info.loadAfter().length];
+            int size = 0;
+            for (String id : info.loadAfter()) {
+                Integer dependency = idIndex.get(id);
+                if (dependency != null) {
+                    loadAfter[size++] = dependency;
+                }
+            }
+            String location = location(moduleClasses.get(i));
+            int index = locationIndex.computeIfAbsent(location, key -> locationIndex.size());
+            entries.add(new Entry(moduleClasses.get(i).getName(), info.id(), index,
+                    size == loadAfter.length ? loadAfter : Arrays.copyOf(loadAfter, size)));
+        }
+        return new BootPlan(fingerprint, new ArrayList<>(locationIndex.keySet()), entries);
+    }
+
+    private static String location(Class<?> clazz) {
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return "";
+        }
+        try {
+            return new File(codeSource.getLocation().toURI()).getAbsolutePath();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return codeSource.getLocation().getPath();
+        }
+    }
+
+    /**
+     * Reads a plan if it was written for the given fingerprint
+     *
+     * @param file        plan file
+     * @param fingerprint expected fingerprint
+     * @return boot plan, or null if missing, unreadable or stale
+     */
+    public static BootPlan read(File file, String fingerprint) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !fingerprint.equals(in.readUTF())) {
+                return null;
+            }
+            List<String> locations = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                locations.add(in.readUTF());
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String className = in.readUTF();
+                String id = in.readUTF();
+                int location = in.readInt();
+                int[] loadAfter = new int[in.readInt()];
+                for (int d = 0; d < loadAfter.length; d++) {
+                    loadAfter[d] = in.readInt();
+                }
+                entries.add(new Entry(className, id, location, loadAfter));
+            }
+            return new BootPlan(fingerprint, locations, entries);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the plan, replacing the file atomically where the platform allows it
+     *
+     * @param file plan file
+     * @throws IOException if the plan can't be written
+     */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(this.fingerprint);
+            out.writeInt(this.locations.size());
+            for (String location : this.locations) {
+                out.writeUTF(location);
+            }
+            out.writeInt(this.entries.size());
+            for (Entry entry : this.entries) {
+                out.writeUTF(entry.className);
+                out.writeUTF(entry.id);
+                out.writeInt(entry.location);
+                out.writeInt(entry.loadAfter.length);
+                for (int dependency : entry.loadAfter) {
+                    out.writeInt(dependency);
+                }
+            }
+        }
+        if (!temp.renameTo(file)) {
+            if (!file.delete() || !temp.renameTo(file)) {
+                throw new IOException("Failed to replace boot plan " + file);
+            }
+        }
+    }
+
+    /**
+     * Loads every planned class through the registry's loader of its owning jar, without initializing it
+     * If the plan can't be used, the loaders acquired for it are released again unless a module tracks them
+     *
+     * @param registry        registry pooling the jar loaders
+     * @param baseModuleClass every class must extend this
+     * @return module classes in load order, or null if any class can't be loaded and the plan must be rebuilt
+     */
+    @SuppressWarnings("unchecked")
+    public <M extends Module> List<Class<M>> loadClasses(ClassLoaderRegistry registry, Class<M> baseModuleClass) {
+        ClassLoader[] loaders = new ClassLoader[this.locations.size()];
+        List<Class<M>> classes = new ArrayList<>(this.entries.size());
+        boolean loaded = false;
+        try {
+            for (Entry entry : this.entries) {
+                ClassLoader loader = loaders[entry.location];
+                if (loader == null) {
+                    String location = this.locations.get(entry.location);
+                    loader = location.isEmpty() ? BootPlan.class.getClassLoader() : registry.acquire(new File(location));
+                    loaders[entry.location] = loader;
+                }
+                Class<?> clazz = Class.forName(entry.className, false, loader);
+                if (!baseModuleClass.isAssignableFrom(clazz)) {
+                    return null;
+                }
+                classes.add((Class<M>) clazz);
+            }
+            loaded = true;
+        } catch (IOException | ClassNotFoundException | LinkageError e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (!loaded) {
+                for (int i = 0; i < loaders.length; i++) {
+                    if (loaders[i] != null && !this.locations.get(i).isEmpty()) {
+                        registry.releaseUnused(new File(this.locations.get(i)));
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    public String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * @return owning jar paths, referenced by {@link Entry#getLocation()}
+     */
+    public List<String> getLocations() {
+        return this.locations;
+    }
+
+    /**
+     * @return planned modules in load order
+     */
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * A single planned module
+     */
+    public static final class Entry {
+
+        private final String className;
+        private final String id;
+        private final int location;
+        private final int[] loadAfter;
+
+        Entry(String className, String id, int location, int[] loadAfter) {
+            this.className = className;
+            this.id = id;
+            this.location = location;
+            this.loadAfter = loadAfter;
+        }
+
+        public String getClassName() {
+            return this.className;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * @return index into {@link BootPlan#getLocations()}
+         */
+        public int getLocation() {
+            return this.location;
+        }
+
+        /**
+         * @return indexes of the planned modules this module loads after
+         */
+        public int[] getLoadAfter() {
+            return this.loadAfter.clone();
+        }
+
+        @Override
+        public String toString() {
+            return this.id + " => " + this.className;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.loader;
+
+import io.not2excel.module.ModuleCoordinator;
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Holds back modules arriving from a discovery stream until every loadAfter id is loaded in the coordinator
+ * Modules waiting on an id are parked under that id and only rechecked once it gets loaded.
+ */
+final class DependencyGate<M extends Module> {
+
+    private final ModuleCoordinator<M> coordinator;
+    private final Consumer<Class<M>> loader;
+    private final Set<Class<M>> pending = new LinkedHashSet<>();
+    private final Map<String, List<Class<M>>> blocked = new HashMap<>();
+
+    DependencyGate(ModuleCoordinator<M> coordinator, Consumer<Class<M>> loader) {
+        this.coordinator = coordinator;
+        this.loader = loader;
+    }
+
+    void offer(Class<M> moduleClass) {
+        this.pending.add(moduleClass);
+        this.release(moduleClass);
+    }
+
+    /**
+     * @return modules whose dependencies never got loaded, in arrival order
+     */
+    List<Class<M>> drain() {
+        List<Class<M>> remaining = new ArrayList<>(this.pending);
+        this.pending.clear();
+        this.blocked.clear();
+        return remaining;
+    }
+
+    private void release(Class<M> moduleClass) {
+        ModuleInfo info = this.coordinator.getModuleInfo(moduleClass);
+        for (String dependency : info.loadAfter()) {
+            if (!this.coordinator.hasModule(dependency)) {
+                this.blocked.computeIfAbsent(dependency, id -> new ArrayList<>()).add(moduleClass);
+                return;
+            }
+        }
+        this.pending.remove(moduleClass);
+        this.loader.accept(moduleClass);
+        List<Class<M>> woken = this.blocked.remove(info.id());
+        if (woken != null) {
+            woken.forEach(this::release);
+        }
+    }
+}
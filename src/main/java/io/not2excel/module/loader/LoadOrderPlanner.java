@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.loader;
+
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleDependencyException;
+import io.not2excel.util.Reflections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Topological load order over {@link ModuleInfo#loadAfter()} ids.
+ * The graph is indexed by id once and ordered with Kahn's algorithm in O(V + E),
+ * ties are broken by input order so the same input always yields the same plan.
+ * <p/>
+ * Modules that sit on or behind a cycle can't be ordered, they are reported together with every cycle
+ * as a full id path. loadAfter ids that match no module are reported and otherwise ignored.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class LoadOrderPlanner {
+
+    private static final int WHITE = 0;
+    private static final int GREY = 1;
+    private static final int BLACK = 2;
+
+    private LoadOrderPlanner() {
+    }
+
+    /**
+     * Plans module classes by their {@link ModuleInfo}
+     *
+     * @param moduleClasses module classes
+     * @return load order plan
+     * @since 1.0.0
+     */
+    public static <M extends Module> Plan<Class<M>> plan(List<Class<M>> moduleClasses) {
+        Map<Class<M>, ModuleInfo> infos = new HashMap<>(moduleClasses.size() * 2);
+        moduleClasses.forEach(c -> infos.put(c, Reflections.getAnnotation(c, ModuleInfo.class)));
+        return plan(moduleClasses, c -> infos.get(c).id(), c -> infos.get(c).loadAfter());
+    }
+
+    /**
+     * Plans any items carrying an id and the ids they load after
+     * Ids are matched exactly, the first item of a duplicated id owns it
+     *
+     * @param items       items in their preferred order
+     * @param idOf        id of an item
+     * @param loadAfterOf ids an item loads after
+     * @return load order plan
+     * @since 1.0.0
+     */
+    public static <T> Plan<T> plan(List<T> items, Function<T, String> idOf, Function<T, String[]> loadAfterOf) {
+        int count = items.size();
+        String[] ids = new String[count];
+        Map<String, Integer> index = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            ids[i] = idOf.apply(items.get(i));
+            index.putIfAbsent(ids[i], i);
+        }
+
+        // dependencies of every node and the reverse edges to its dependents, both flattened into arrays
+        int[][] dependencies = new int[count][];
+        int[] dependentCount = new int[count];
+        int[] inDegree = new int[count];
+        Map<String, List<String>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String[] loadAfter = loadAfterOf.apply(items.get(i));
+            int[] resolved = new int[loadAfter.length];
+            int size = 0;
+            for (String id : loadAfter) {
+                Integer dependency = index.get(id);
+                if (dependency == null) {
+                    missing.computeIfAbsent(ids[i], key -> new ArrayList<>()).add(id);
+                    continue;
+                }
+                resolved[size++] = dependency;
+                dependentCount[dependency]++;
+            }
+            dependencies[i] = size == resolved.length ? resolved : Arrays.copyOf(resolved, size);
+            inDegree[i] = size;
+        }
+        int[] dependentStart = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            dependentStart[i + 1] = dependentStart[i] + dependentCount[i];
+        }
+        int[] dependents = new int[dependentStart[count]];
+        int[] fill = Arrays.copyOf(dependentStart, count);
+        for (int i = 0; i < count; i++) {
+            for (int dependency : dependencies[i]) {
+                dependents[fill[dependency]++] = i;
+            }
+        }
+
+        int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            if (inDegree[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        List<T> order = new ArrayList<>(count);
+        while (head < tail) {
+            int node = queue[head++];
+            order.add(items.get(node));
+            for (int e = dependentStart[node]; e < dependentStart[node + 1]; e++) {
+                if (--inDegree[dependents[e]] == 0) {
+                    queue[tail++] = dependents[e];
+                }
+            }
+        }
+
+        List<T> unresolved = new ArrayList<>(count - order.size());
+        List<List<String>> cycles = new ArrayList<>();
+        Map<T, List<T>> backEdges = new IdentityHashMap<>();
+        if (order.size() < count) {
+            for (int i = 0; i < count; i++) {
+                if (inDegree[i] > 0) {
+                    unresolved.add(items.get(i));
+                }
+            }
+            List<int[]> edges = new ArrayList<>();
+            findCycles(ids, dependencies, inDegree, cycles, edges);
+            for (int[] backEdge : edges) {
+                backEdges.computeIfAbsent(items.get(backEdge[0]), item -> new ArrayList<>()).add(items.get(backEdge[1]));
+            }
+        }
+        return new Plan<>(order, unresolved, cycles, missing, backEdges);
+    }
+
+    /**
+     * Walks the nodes Kahn's algorithm couldn't order and records every back edge as a cycle path
+     * and as a {node, dependency} pair, the graph without these edges is acyclic
+     * Iterative, so deep chains can't overflow the stack
+     */
+    private static void findCycles(String[] ids, int[][] dependencies, int[] inDegree, List<List<String>> cycles,
+                                   List<int[]> backEdges) {
+        int count = ids.length;
+        int[] color = new int[count];
+        int[] stack = new int[count];
+        int[] edge = new int[count];
+        int[] stackPosition = new int[count];
+        for (int root = 0; root < count; root++) {
+            if (inDegree[root] == 0 || color[root] != WHITE) {
+                continue;
+            }
+            int depth = 0;
+            stack[0] = root;
+            edge[0] = 0;
+            stackPosition[root] = 0;
+            color[root] = GREY;
+            while (depth >= 0) {
+                int node = stack[depth];
+                if (edge[depth] == dependencies[node].length) {
+                    color[node] = BLACK;
+                    depth--;
+                    continue;
+                }
+                int next = dependencies[node][edge[depth]++];
+                if (inDegree[next] == 0) {
+                    continue;
+                }
+                if (color[next] == GREY) {
+                    List<String> path = new ArrayList<>(depth - stackPosition[next] + 2);
+                    for (int i = stackPosition[next]; i <= depth; i++) {
+                        path.add(ids[stack[i]]);
+                    }
+                    path.add(ids[next]);
+                    cycles.add(Collections.unmodifiableList(path));
+                    backEdges.add(new int[]{node, next});
+                } else if (color[next] == WHITE) {
+                    color[next] = GREY;
+                    stack[++depth] = next;
+                    edge[depth] = 0;
+                    stackPosition[next] = depth;
+                }
+            }
+        }
+    }
+
+    /**
+     * Result of planning, the order plus everything that prevented a complete order
+     */
+    public static final class Plan<T> {
+
+        private final List<T> order;
+        private final List<T> unresolved;
+        private final List<List<String>> cycles;
+        private final Map<String, List<String>> missing;
+        private final Map<T, List<T>> backEdges;
+
+        Plan(List<T> order, List<T> unresolved, List<List<String>> cycles, Map<String, List<String>> missing,
+             Map<T, List<T>> backEdges) {
+            this.order = Collections.unmodifiableList(order);
+            this.unresolved = Collections.unmodifiableList(unresolved);
+            this.cycles = Collections.unmodifiableList(cycles);
+            this.missing = Collections.unmodifiableMap(missing);
+            this.backEdges = Collections.unmodifiableMap(backEdges);
+        }
+
+        /**
+         * @return every orderable item, each after all items it loads after
+         */
+        public List<T> getOrder() {
+            return this.order;
+        }
+
+        /**
+         * @return items on or behind a cycle, in input order
+         */
+        public List<T> getUnresolved() {
+            return this.unresolved;
+        }
+
+        /**
+         * @return the ordered items followed by the unresolved ones, every input item exactly once
+         */
+        public List<T> getFullOrder() {
+            if (this.unresolved.isEmpty()) {
+                return this.order;
+            }
+            List<T> full = new ArrayList<>(this.order.size() + this.unresolved.size());
+            full.addAll(this.order);
+            full.addAll(this.unresolved);
+            return full;
+        }
+
+        /**
+         * @return cycles as id paths, "a, b, a" meaning a loads after b which loads after a
+         */
+        public List<List<String>> getCycles() {
+            return this.cycles;
+        }
+
+        /**
+         * The edges closing the reported cycles, one per cycle, ignoring just these orders every other item
+         *
+         * @param item planned item
+         * @param dependency item it loads after
+         * @return true if the item loading after the dependency closes a cycle
+         */
+        public boolean isBackEdge(T item, T dependency) {
+            List<T> dependencies = this.backEdges.get(item);
+            return dependencies != null && dependencies.contains(dependency);
+        }
+
+        /**
+         * @return id -> loadAfter ids matching no planned module
+         */
+        public Map<String, List<String>> getMissing() {
+            return this.missing;
+        }
+
+        /**
+         * @return true if there are no cycles and no missing ids
+         */
+        public boolean isComplete() {
+            return this.unresolved.isEmpty() && this.missing.isEmpty();
+        }
+
+        /**
+         * @return the order if the plan is complete
+         * @throws ModuleDependencyException describing every cycle and missing id otherwise
+         */
+        public List<T> orThrow() throws ModuleDependencyException {
+            if (!this.isComplete()) {
+                throw new ModuleDependencyException(this.describeProblems());
+            }
+            return this.order;
+        }
+
+        /**
+         * @return human readable description of every cycle and missing id, empty if complete
+         */
+        public String describeProblems() {
+            StringBuilder builder = new StringBuilder();
+            this.cycles.forEach(cycle -> builder.append(builder.length() == 0 ? "" : "; ")
+                    .append("Circular loadAfter: ").append(String.join(" -> ", cycle)));
+            this.missing.forEach((id, ids) -> builder.append(builder.length() == 0 ? "" : "; ")
+                    .append("Module ").append(id).append(" loads after missing ").append(String.join(", ", ids)));
+            return builder.toString();
+        }
+    }
+}
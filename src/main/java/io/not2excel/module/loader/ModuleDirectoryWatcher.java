@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.loader;
+
+import io.not2excel.module.ConcurrentModuleCoordinator;
+import io.not2excel.module.ModuleCoordinator;
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleDisableException;
+import io.not2excel.module.exception.ModuleEnableException;
+import io.not2excel.module.exception.ModuleUnLoadException;
+import io.not2excel.util.ClassEnumerator;
+import io.not2excel.util.ClassLoaderRegistry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Hot reloads the jars of a module directory loaded with {@link ModuleLoader#loadModulesFromDirectoryIsolated(File)}.
+ * Changes to a jar are debounced, once the jar has been quiet for the debounce delay its modules are disabled
+ * and unloaded, its lazy registrations dropped, its loader is renewed in the {@link ClassLoaderRegistry},
+ * and the directory is rescanned so classes other jars own still shadow the jar's copies,
+ * the jar's modules are loaded or registered again as before and the previously enabled ones enabled again.
+ * New jars are loaded, deleted jars unloaded.
+ * Only jars directly inside the directory are watched.
+ * <p/>
+ * Reloads run one at a time on the watcher's thread, concurrently with the application's own lifecycle calls,
+ * so the loader's coordinator must be a {@link ConcurrentModuleCoordinator}. A failed reload is logged.
+ * Modules of other jars aren't touched, any reference they hold to a reloaded module must be looked up again.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ModuleDirectoryWatcher<M extends Module> implements Closeable {
+
+    private static final Logger logger = Logger.getLogger("ModuleDirectoryWatcher");
+
+    private final ModuleLoader<M> moduleLoader;
+    private final File directory;
+    private final long debounceMillis;
+    private final Map<File, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private final Map<File, String> stamps = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private WatchService watchService;
+    private Thread pollThread;
+
+    /**
+     * @param moduleLoader   loader whose coordinator the modules are reloaded through
+     * @param directory      module directory
+     * @param debounceMillis quiet period after the last change of a jar before it's reloaded
+     * @throws IllegalArgumentException if the loader's coordinator isn't a {@link ConcurrentModuleCoordinator}
+     */
+    public ModuleDirectoryWatcher(ModuleLoader<M> moduleLoader, File directory, long debounceMillis) {
+        if (!(moduleLoader.getRelativeCoordinator() instanceof ConcurrentModuleCoordinator)) {
+            throw new IllegalArgumentException("Hot reloading needs a ConcurrentModuleCoordinator, not "
+                    + moduleLoader.getRelativeCoordinator().getClass().getSimpleName());
+        }
+        this.moduleLoader = moduleLoader;
+        this.directory = directory.getAbsoluteFile();
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Starts watching, jars already in the directory are considered loaded
+     *
+     * @throws IOException if the directory can't be watched
+     */
+    public synchronized void start() throws IOException {
+        if (this.watchService != null) {
+            return;
+        }
+        ClassEnumerator.listJars(this.directory).forEach(jar -> this.stamps.put(jar.getAbsoluteFile(), stamp(jar)));
+        this.watchService = this.directory.toPath().getFileSystem().newWatchService();
+        this.directory.toPath().register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "module-reload-" + this.directory.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        WatchService service = this.watchService;
+        this.pollThread = new Thread(() -> this.poll(service), "module-watch-" + this.directory.getName());
+        this.pollThread.setDaemon(true);
+        this.pollThread.start();
+    }
+
+    private void poll(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // events were lost, every jar whose stamp changed is reloaded
+                        Set<File> jars = new HashSet<>(this.stamps.keySet());
+                        ClassEnumerator.listJars(this.directory).forEach(jar -> jars.add(jar.getAbsoluteFile()));
+                        jars.forEach(this::schedule);
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    if (name.toString().endsWith(".jar")) {
+                        this.schedule(new File(this.directory, name.toString()));
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException | RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    /**
+     * (Re)starts the debounce delay of a jar
+     */
+    private void schedule(File jar) {
+        this.pending.compute(jar, (key, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return this.scheduler.schedule(() -> {
+                this.pending.remove(key);
+                String stamp = stamp(key);
+                if (!stamp.equals(this.stamps.get(key))) {
+                    try {
+                        this.reload(key);
+                    } catch (Throwable t) {
+                        logger.log(Level.SEVERE, "Failed to reload " + key, t);
+                    }
+                }
+            }, this.debounceMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Reloads a single jar right away, unloading its modules if the jar is gone
+     *
+     * @param jar module jar
+     * @return module classes loaded from the jar, in load order
+     */
+    public synchronized List<Class<M>> reload(File jar) {
+        File file = jar.getAbsoluteFile();
+        ModuleCoordinator<M> coordinator = this.moduleLoader.getRelativeCoordinator();
+        ClassLoaderRegistry registry = coordinator.getClassLoaderRegistry();
+
+        List<M> previous = coordinator.getModuleList().values().stream()
+                .filter(module -> file.equals(location(module.getClass())))
+                .collect(Collectors.toList());
+        Set<String> enabled = new HashSet<>();
+        previous.forEach(module -> {
+            if (coordinator.isEnabled(module)) {
+                enabled.add(coordinator.getModuleInfo(module).id());
+            }
+        });
+        List<M> teardown = new ArrayList<>(LoadOrderPlanner.plan(previous, module -> coordinator.getModuleInfo(module).id(),
+                module -> coordinator.getModuleInfo(module).loadAfter()).getFullOrder());
+        Collections.reverse(teardown);
+        for (M module : teardown) {
+            try {
+                coordinator.disable(module);
+            } catch (ModuleDisableException e) {
+                e.printStackTrace();
+            }
+        }
+        for (M module : teardown) {
+            try {
+                coordinator.unload(module);
+            } catch (ModuleUnLoadException e) {
+                e.printStackTrace();
+            }
+        }
+        Set<String> registered = new HashSet<>();
+        coordinator.getRegisteredModules().forEach((id, moduleClass) -> {
+            if (file.equals(location(moduleClass))) {
+                registered.add(id);
+            }
+        });
+        for (String id : registered) {
+            try {
+                coordinator.unload(id);
+            } catch (ModuleUnLoadException e) {
+                e.printStackTrace();
+            }
+        }
+        registry.renew(file);
+
+        this.stamps.remove(file);
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+        this.stamps.put(file, stamp(file));
+        List<Class<M>> moduleClasses = this.moduleLoader.sortModulesByLoadOrder(this.scan(file, coordinator));
+        List<Class<M>> lazy = new ArrayList<>();
+        List<Class<M>> eager = new ArrayList<>();
+        moduleClasses.forEach(moduleClass -> (registered.contains(coordinator.getModuleInfo(moduleClass).id())
+                ? lazy : eager).add(moduleClass));
+        coordinator.register(lazy);
+        this.moduleLoader.loadModules(eager);
+        for (Class<M> moduleClass : moduleClasses) {
+            String id = coordinator.getModuleInfo(moduleClass).id();
+            if (enabled.contains(id) && coordinator.getModule(moduleClass) != null) {
+                try {
+                    coordinator.enable(id);
+                } catch (ModuleEnableException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        registry.releaseUnused(file);
+        return moduleClasses;
+    }
+
+    /**
+     * Rescans every jar of the directory so the jar's classes are shadowed by the same owners as on the first load,
+     * loaders the rescan had to create for other jars are closed again
+     *
+     * @return module classes defined by the jar itself
+     */
+    @SuppressWarnings("unchecked")
+    private List<Class<M>> scan(File jar, ModuleCoordinator<M> coordinator) {
+        Class<M> baseModuleClass = coordinator.getBaseModuleClass();
+        ClassLoaderRegistry registry = coordinator.getClassLoaderRegistry();
+        List<File> jars = ClassEnumerator.listJars(this.directory);
+        List<File> created = jars.stream().filter(other -> !registry.isPooled(other)).collect(Collectors.toList());
+        List<Class<M>> moduleClasses = ClassEnumerator.filterByAnnotation(ClassEnumerator.filterByAssignableFrom(
+                this.moduleLoader.getClassScanner().scanJarsIsolated(jars, registry,
+                        this.moduleLoader.getModuleScanFilter(), null), baseModuleClass), ModuleInfo.class).stream()
+                .filter(c -> jar.equals(location(c)))
+                .map(c -> (Class<M>) c)
+                .collect(Collectors.toList());
+        created.remove(jar);
+        registry.releaseUnused(created);
+        return moduleClasses;
+    }
+
+    private static File location(Class<?> clazz) {
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return null;
+        }
+        try {
+            return new File(codeSource.getLocation().toURI()).getAbsoluteFile();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String stamp(File jar) {
+        return jar.isFile() ? jar.length() + "|" + jar.lastModified() : "";
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Stops watching, pending reloads are dropped
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.watchService == null) {
+            return;
+        }
+        this.watchService.close();
+        this.pollThread.interrupt();
+        this.scheduler.shutdownNow();
+        this.pending.clear();
+        this.watchService = null;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.loader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+/**
+ * Build time index of the modules inside a jar or class directory,
+ * written by the moduleapi-processor annotation processor.
+ * <p/>
+ * One module per line: {@code className<TAB>id<TAB>name<TAB>loadAfter[,loadAfter...]},
+ * values are backslash escaped, lines starting with '#' are comments.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ModuleIndex {
+
+    public static final String RESOURCE = "META-INF/moduleapi/modules.idx";
+
+    private final List<Entry> entries;
+
+    private ModuleIndex(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Reads an index, the stream is not closed
+     *
+     * @param in index stream
+     * @return module index
+     * @throws IOException if the index is malformed
+     */
+    public static ModuleIndex read(InputStream in) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            if (columns.length < 4) {
+                throw new IOException("Malformed module index line " + lineNumber + ": " + line);
+            }
+            entries.add(new Entry(unescape(columns[0]), unescape(columns[1]), unescape(columns[2]),
+                    splitList(columns[3])));
+        }
+        return new ModuleIndex(entries);
+    }
+
+    /**
+     * Reads only the class names of an index, used as a {@link io.not2excel.util.ScanFilter.IndexReader}
+     *
+     * @param in index stream
+     * @return indexed class names
+     * @throws IOException if the index is malformed
+     */
+    public static List<String> readClassNames(InputStream in) throws IOException {
+        return read(in).getEntries().stream().map(Entry::getClassName).collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the index of a jar file or class directory
+     *
+     * @param location jar file or class directory
+     * @return module index, or null if the location carries none
+     * @throws IOException if the index exists but can't be read
+     */
+    public static ModuleIndex fromLocation(File location) throws IOException {
+        if (location.isDirectory()) {
+            File index = new File(location, RESOURCE);
+            if (!index.isFile()) {
+                return null;
+            }
+            try (InputStream in = new FileInputStream(index)) {
+                return read(in);
+            }
+        }
+        if (!location.isFile()) {
+            return null;
+        }
+        try (JarFile jarFile = new JarFile(location)) {
+            JarEntry entry = jarFile.getJarEntry(RESOURCE);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = jarFile.getInputStream(entry)) {
+                return read(in);
+            }
+        }
+    }
+
+    private static String[] splitList(String value) {
+        if (value.isEmpty()) {
+            return new String[0];
+        }
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                current.append(c).append(value.charAt(++i));
+            } else if (c == ',') {
+                parts.add(unescape(current.toString()));
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        parts.add(unescape(current.toString()));
+        return parts.toArray(new String[parts.size()]);
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    public boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * A single indexed module, mirrors the values of its {@link io.not2excel.module.annotation.ModuleInfo}
+     */
+    public static final class Entry {
+
+        private final String className;
+        private final String id;
+        private final String name;
+        private final String[] loadAfter;
+
+        public Entry(String className, String id, String name, String[] loadAfter) {
+            this.className = className;
+            this.id = id;
+            this.name = name;
+            this.loadAfter = loadAfter;
+        }
+
+        public String getClassName() {
+            return this.className;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String[] getLoadAfter() {
+            return this.loadAfter.clone();
+        }
+
+        @Override
+        public String toString() {
+            return this.id + " => " + this.className;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.loader;
+
+import io.not2excel.module.ModuleCoordinator;
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleDisableException;
+import io.not2excel.module.exception.ModuleEnableException;
+import io.not2excel.module.exception.ModuleLoadException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs module lifecycle callbacks in parallel along the {@link ModuleInfo#loadAfter()} graph.
+ * Every module starts as soon as the modules it loads after have completed,
+ * independent modules run concurrently on the executor, so a batch takes roughly as long as its longest chain.
+ * <p/>
+ * The graph is ordered by {@link LoadOrderPlanner}, dependencies outside the batch are not waited for. Callback failures are reported and don't hold back dependents,
+ * the same as the sequential methods of {@link ModuleCoordinator}.
+ * The coordinator must be thread safe, i.e. {@link io.not2excel.module.ConcurrentModuleCoordinator}.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ModuleLifecycleExecutor<M extends Module> {
+
+    private static final Logger logger = Logger.getLogger("ModuleLifecycleExecutor");
+
+    private final ModuleCoordinator<M> coordinator;
+    private final Executor executor;
+
+    /**
+     * @param coordinator thread safe coordinator to run the lifecycle through
+     * @param executor    executor running the callbacks
+     */
+    public ModuleLifecycleExecutor(ModuleCoordinator<M> coordinator, Executor executor) {
+        this.coordinator = coordinator;
+        this.executor = executor;
+    }
+
+    /**
+     * Instantiates and loads every module once its loadAfter modules are loaded
+     *
+     * @param moduleClasses modules to load
+     * @return modules in the order their load completed
+     */
+    public List<Class<M>> load(List<Class<M>> moduleClasses) {
+        return this.run(moduleClasses, this.coordinator::getModuleInfo, false, moduleClass -> {
+            try {
+                this.coordinator.load(moduleClass);
+            } catch (ModuleLoadException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Enables every module once its loadAfter modules are enabled
+     *
+     * @param modules loaded modules
+     * @return modules in the order their enable completed
+     */
+    public List<M> enable(List<M> modules) {
+        return this.run(modules, this.coordinator::getModuleInfo, false, module -> {
+            try {
+                this.coordinator.enable(module);
+            } catch (ModuleEnableException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Disables every module once the modules loading after it are disabled, the reverse of {@link #enable(List)}
+     *
+     * @param modules enabled modules
+     * @return modules in the order their disable completed
+     */
+    public List<M> disable(List<M> modules) {
+        return this.run(modules, this.coordinator::getModuleInfo, true, module -> {
+            try {
+                this.coordinator.disable(module);
+            } catch (ModuleDisableException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Creates one future per item, then chains each item's callback on the futures of the items it waits for
+     * and blocks until all are done, only the edges closing a cycle are left out
+     *
+     * @param items   modules or module classes
+     * @param infoOf  ModuleInfo lookup
+     * @param reverse wait for dependents instead of dependencies
+     * @param action  lifecycle callback
+     * @return items in completion order
+     */
+    private <T> List<T> run(List<T> items, Function<T, ModuleInfo> infoOf, boolean reverse, Consumer<T> action) {
+        Map<T, ModuleInfo> infos = new IdentityHashMap<>();
+        items.forEach(item -> infos.put(item, infoOf.apply(item)));
+        LoadOrderPlanner.Plan<T> plan = LoadOrderPlanner.plan(items, item -> infos.get(item).id(),
+                item -> infos.get(item).loadAfter());
+        if (!plan.getCycles().isEmpty()) {
+            logger.log(Level.WARNING, plan.describeProblems()
+                    + ", modules on a cycle run once their other dependencies are done");
+        }
+        Map<String, T> byId = new HashMap<>();
+        items.forEach(item -> byId.putIfAbsent(infos.get(item).id(), item));
+        Map<T, List<T>> waitsFor = new IdentityHashMap<>();
+        items.forEach(item -> waitsFor.put(item, new ArrayList<>()));
+        for (T item : items) {
+            for (String id : infos.get(item).loadAfter()) {
+                T dependency = byId.get(id);
+                if (dependency == null || dependency == item || plan.isBackEdge(item, dependency)) {
+                    continue;
+                }
+                if (reverse) {
+                    waitsFor.get(dependency).add(item);
+                } else {
+                    waitsFor.get(item).add(dependency);
+                }
+            }
+        }
+        Map<T, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+        items.forEach(item -> futures.put(item, new CompletableFuture<>()));
+        List<T> order = plan.getFullOrder();
+        if (reverse) {
+            order = new ArrayList<>(order);
+            Collections.reverse(order);
+        }
+        List<T> completed = Collections.synchronizedList(new ArrayList<>(items.size()));
+        for (T item : order) {
+            List<T> dependencies = waitsFor.get(item);
+            Runnable task = () -> {
+                try {
+                    action.accept(item);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                completed.add(item);
+            };
+            CompletableFuture<Void> future = futures.get(item);
+            (dependencies.isEmpty() ? CompletableFuture.runAsync(task, this.executor)
+                    : CompletableFuture.allOf(dependencies.stream().map(futures::get).toArray(CompletableFuture<?>[]::new))
+                    .thenRunAsync(task, this.executor)).whenComplete((result, e) -> {
+                if (e == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()])).join();
+        return completed;
+    }
+
+    public ModuleCoordinator<M> getCoordinator() {
+        return this.coordinator;
+    }
+
+    public Executor getExecutor() {
+        return this.executor;
+    }
+}
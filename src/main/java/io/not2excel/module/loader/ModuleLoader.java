@@ -11,13 +11,21 @@ package io.not2excel.module.loader;
 import io.not2excel.module.ModuleCoordinator;
 import io.not2excel.module.annotation.ModuleInfo;
 import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleDependencyException;
 import io.not2excel.module.exception.ModuleLoadException;
 import io.not2excel.util.ClassEnumerator;
 import io.not2excel.util.ClassEnumerator.LoadedClasses;
+import io.not2excel.util.ClassScanner;
 import io.not2excel.util.Reflections;
+import io.not2excel.util.ScanCache;
+import io.not2excel.util.ScanFilter;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public interface ModuleLoader<M extends Module> {
     
@@ -32,49 +40,199 @@ public interface ModuleLoader<M extends Module> {
         });
     }
 
+    /**
+     * Loads modules in parallel, each as soon as its loadAfter modules are loaded
+     * The coordinator must be thread safe
+     *
+     * @param moduleList modules to load
+     * @param executor   executor running the onLoad callbacks
+     * @return modules in the order their load completed
+     */
+    default List<Class<M>> loadModules(List<Class<M>> moduleList, Executor executor) {
+        return new ModuleLifecycleExecutor<>(this.getRelativeCoordinator(), executor).load(moduleList);
+    }
+
+    /**
+     * Orders modules so every module comes after the modules it loads after, see {@link LoadOrderPlanner}
+     * Cycles and missing loadAfter ids are reported, modules on or behind a cycle are appended in input order
+     *
+     * @param moduleList modules to sort
+     * @return sorted modules, every input module exactly once
+     */
     default List<Class<M>> sortModulesByLoadOrder(List<Class<M>> moduleList) {
-        List<Class<M>> sorted = new ArrayList<>();
-        Map<Class<M>, String[]> mappedDependents = new HashMap<>();
-        moduleList.parallelStream().forEach(c -> {
-            ModuleInfo info = Reflections.getAnnotation(c, ModuleInfo.class);
-            if(info.loadAfter().length == 0) {
-                sorted.add(c);
-            } else {
-                mappedDependents.put(c, info.loadAfter());
-            }
-        });
-        mappedDependents.forEach((c, s) -> {
-            List<String> ids = Arrays.asList(s);
-            int i = 0;
-            int insert = i;
-            for(Class<M> testClazz : sorted) {
-                ModuleInfo info = Reflections.getAnnotation(testClazz, ModuleInfo.class);
-                if(ids.contains(info.id())) {
-                    ids.remove(info.id());
-                    insert = i;
-                }
-                if(ids.isEmpty()) {
-                    break;
-                }
-                i++;
-            }
-            sorted.add(insert, c);
-        });
-        return sorted;
+        LoadOrderPlanner.Plan<Class<M>> plan = LoadOrderPlanner.plan(moduleList);
+        try {
+            return plan.orThrow();
+        } catch (ModuleDependencyException e) {
+            e.printStackTrace();
+        }
+        return plan.getFullOrder();
+    }
+
+    default ClassScanner getClassScanner() {
+        return ClassScanner.getDefault();
+    }
+
+    default ScanFilter getModuleScanFilter() {
+        return ScanFilter.of(Module.class, ModuleInfo.class).withIndex(ModuleIndex.RESOURCE, ModuleIndex::readClassNames);
     }
 
     default List<Class<?>> loadModulesFromDirectory(File directory) {
-        Map<String, LoadedClasses> initialLoading = ClassEnumerator.loadClassesFromDirectory(directory, true);
+        ScanCache cache = ScanCache.forDirectory(directory, this.getModuleScanFilter());
+        List<Class<?>> modules = this.loadModulesFromDirectory(directory, cache);
+        try {
+            cache.save();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return modules;
+    }
+
+    default List<Class<?>> loadModulesFromDirectory(File directory, ScanCache cache) {
+        Map<String, LoadedClasses> initialLoading = ClassEnumerator.loadClassesFromDirectory(directory, true,
+                this.getModuleScanFilter(), cache, this.getClassScanner(),
+                this.getRelativeCoordinator().getClassLoaderRegistry());
         List<Class<?>> moduleClasses = ClassEnumerator.filterByAssignableFrom(initialLoading, Module.class);
         return ClassEnumerator.filterByAnnotation(moduleClasses, ModuleInfo.class);
     }
 
+    /**
+     * Loads the module jars of a directory, each through its own isolated class loader
+     * A class shipped by several jars is only defined by the first jar in path order
+     *
+     * @param directory module directory
+     * @return module classes
+     */
+    default List<Class<?>> loadModulesFromDirectoryIsolated(File directory) {
+        ScanCache cache = ScanCache.forDirectory(directory, this.getModuleScanFilter());
+        List<Class<?>> modules = this.loadModulesFromDirectoryIsolated(directory, cache);
+        try {
+            cache.save();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return modules;
+    }
+
+    default List<Class<?>> loadModulesFromDirectoryIsolated(File directory, ScanCache cache) {
+        Map<String, LoadedClasses> initialLoading = ClassEnumerator.loadClassesFromDirectoryIsolated(directory,
+                this.getRelativeCoordinator().getClassLoaderRegistry(), this.getModuleScanFilter(), cache,
+                this.getClassScanner());
+        List<Class<?>> moduleClasses = ClassEnumerator.filterByAssignableFrom(initialLoading, Module.class);
+        return ClassEnumerator.filterByAnnotation(moduleClasses, ModuleInfo.class);
+    }
+
+    /**
+     * Starts hot reloading the jars of a directory loaded with {@link #loadModulesFromDirectoryIsolated(File)}
+     *
+     * @param directory module directory
+     * @return started watcher, close it to stop watching
+     * @throws IOException if the directory can't be watched
+     */
+    default ModuleDirectoryWatcher<M> watchModuleDirectory(File directory) throws IOException {
+        ModuleDirectoryWatcher<M> watcher = new ModuleDirectoryWatcher<>(this, directory, 500L);
+        watcher.start();
+        return watcher;
+    }
+
+    @SuppressWarnings("unchecked")
+    default Stream<Class<M>> discoverModules(File directory, ScanCache cache) {
+        ModuleCoordinator<M> moduleCoordinator = this.getRelativeCoordinator();
+        Class<M> baseModuleClass = moduleCoordinator.getBaseModuleClass();
+        return this.getClassScanner().discover(directory, null, true, this.getModuleScanFilter(), cache,
+                moduleCoordinator.getClassLoaderRegistry())
+                .filter(baseModuleClass::isAssignableFrom)
+                .map(c -> (Class<M>) c);
+    }
+
+    /**
+     * Loads modules while the directory is still being scanned,
+     * each module is loaded as soon as it's discovered and its loadAfter ids are loaded.
+     * Modules whose dependencies never show up are loaded last, sorted by {@link #sortModulesByLoadOrder(List)}
+     * so ones waiting on each other still load in dependency order.
+     * Afterwards the loaders of the directory's jars that yielded no loaded or registered module are closed.
+     * A failed scan is rethrown as an IllegalStateException, modules still waiting on their dependencies aren't loaded.
+     *
+     * @param directory module directory
+     * @return module classes in the order they were loaded
+     */
+    default List<Class<M>> loadModulesFromDirectoryStreaming(File directory) {
+        ScanCache cache = ScanCache.forDirectory(directory, this.getModuleScanFilter());
+        ModuleCoordinator<M> moduleCoordinator = this.getRelativeCoordinator();
+        List<Class<M>> loadOrder = new ArrayList<>();
+        DependencyGate<M> gate = new DependencyGate<>(moduleCoordinator, c -> {
+            loadOrder.add(c);
+            this.loadModules(Collections.singletonList(c));
+        });
+        try (Stream<Class<M>> modules = this.discoverModules(directory, cache)) {
+            modules.forEach(gate::offer);
+        }
+        List<Class<M>> unresolved = this.sortModulesByLoadOrder(gate.drain());
+        loadOrder.addAll(unresolved);
+        this.loadModules(unresolved);
+        moduleCoordinator.getClassLoaderRegistry().releaseUnused(ClassEnumerator.listJars(directory));
+        try {
+            cache.save();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return loadOrder;
+    }
+
+    /**
+     * Loads the modules of a directory in the order recorded by its {@link BootPlan}
+     * Without a plan matching the directory's jars, the directory is scanned and sorted and a new plan is written
+     * Afterwards the loaders this call acquired that yielded no loaded or registered module are closed.
+     *
+     * @param directory module directory
+     * @return module classes in load order
+     */
+    @SuppressWarnings("unchecked")
+    default List<Class<M>> loadModulesFromBootPlan(File directory) {
+        ModuleCoordinator<M> moduleCoordinator = this.getRelativeCoordinator();
+        File planFile = BootPlan.fileFor(directory);
+        String fingerprint = BootPlan.fingerprint(directory);
+        BootPlan plan = BootPlan.read(planFile, fingerprint);
+        List<Class<M>> ordered = plan == null ? null : plan.loadClasses(moduleCoordinator.getClassLoaderRegistry(),
+                moduleCoordinator.getBaseModuleClass());
+        List<File> acquired = new ArrayList<>();
+        if (ordered != null) {
+            plan.getLocations().stream().filter(location -> !location.isEmpty())
+                    .forEach(location -> acquired.add(new File(location)));
+        } else {
+            Class<M> baseModuleClass = moduleCoordinator.getBaseModuleClass();
+            ordered = this.sortModulesByLoadOrder(this.loadModulesFromDirectory(directory).stream()
+                    .filter(baseModuleClass::isAssignableFrom)
+                    .map(c -> (Class<M>) c)
+                    .collect(Collectors.toList()));
+            try {
+                BootPlan.of(fingerprint, ordered).write(planFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            acquired.add(directory);
+            acquired.addAll(ClassEnumerator.listJars(directory));
+        }
+        this.loadModules(ordered);
+        moduleCoordinator.getClassLoaderRegistry().releaseUnused(acquired);
+        return ordered;
+    }
+
     default List<Class<?>> loadModulesFromDirectory(String relativePath) {
         File directory = new File(ClassEnumerator.getParentFolder(), relativePath);
         return this.loadModulesFromDirectory(directory);
     }
 
     default Map<String, LoadedClasses> getInternalModules() {
+        try {
+            ModuleIndex index = ModuleIndex.fromLocation(ClassEnumerator.getCodeSource());
+            if (index != null) {
+                return ClassEnumerator.loadClasses(index.getEntries().stream().map(ModuleIndex.Entry::getClassName)
+                        .collect(Collectors.toList()), ClassEnumerator.class.getClassLoader());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
         return ClassEnumerator.isJar() ? ClassEnumerator.loadClassesFromJar() :
                 ClassEnumerator.loadClassesFromPackage("");
     }
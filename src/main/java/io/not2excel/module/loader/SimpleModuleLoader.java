@@ -10,17 +10,29 @@ package io.not2excel.module.loader;
 
 import io.not2excel.module.ModuleCoordinator;
 import io.not2excel.module.context.Module;
+import io.not2excel.util.ClassScanner;
 
 public class SimpleModuleLoader<M extends Module> implements ModuleLoader<M> {
 
     private final ModuleCoordinator<M> moduleCoordinator;
+    private final ClassScanner classScanner;
 
     public SimpleModuleLoader(ModuleCoordinator<M> moduleCoordinator) {
+        this(moduleCoordinator, ClassScanner.getDefault());
+    }
+
+    public SimpleModuleLoader(ModuleCoordinator<M> moduleCoordinator, ClassScanner classScanner) {
         this.moduleCoordinator = moduleCoordinator;
+        this.classScanner = classScanner;
     }
 
     @Override
     public ModuleCoordinator<M> getRelativeCoordinator() {
         return moduleCoordinator;
     }
+
+    @Override
+    public ClassScanner getClassScanner() {
+        return classScanner;
+    }
 }
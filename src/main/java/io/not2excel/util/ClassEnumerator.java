@@ -17,16 +17,21 @@ package io.not2excel.util;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import io.not2excel.util.jfr.FlightEvents;
+
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Annotation;
 import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.net.URLDecoder;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,6 +47,8 @@ import java.util.stream.Collectors;
 public final class ClassEnumerator {
 
     private static final Logger logger = Logger.getLogger("ClassEnumerator");
+    private static final Map<String, PackageIndex> packageIndexes = new ConcurrentHashMap<>();
+    private static volatile String apiVersion;
 
     /**
      * Returns true if this class is run from a jar file
@@ -52,6 +59,43 @@ public final class ClassEnumerator {
         return ClassEnumerator.class.getProtectionDomain().getCodeSource().getLocation().getFile().endsWith(".jar");
     }
 
+    /**
+     * Retrieves the CodeSource location of this class, either a jar or a class directory
+     *
+     * @return code source file
+     * @since 1.0.0
+     */
+    public static File getCodeSource() {
+        return new File(ClassEnumerator.class.getProtectionDomain().getCodeSource().getLocation().getFile());
+    }
+
+    /**
+     * Identifies the running module-api build for caches that must not outlive it,
+     * its implementation version plus the size and modification time of its jar.
+     * Snapshot builds keep their version, the jar stamp still changes with every build
+     *
+     * @return version key, "dev" plus nothing else when run from a class directory without a manifest
+     * @since 1.0.0
+     */
+    public static String getApiVersion() {
+        String version = apiVersion;
+        if (version == null) {
+            Package apiPackage = ClassEnumerator.class.getPackage();
+            String implementationVersion = apiPackage == null ? null : apiPackage.getImplementationVersion();
+            version = implementationVersion == null ? "dev" : implementationVersion;
+            try {
+                File codeSource = getCodeSource();
+                if (codeSource.isFile()) {
+                    version += "|" + codeSource.length() + "|" + codeSource.lastModified();
+                }
+            } catch (SecurityException | NullPointerException e) {
+                logger.log(Level.FINE, "Failed to stamp the module-api code source", e);
+            }
+            apiVersion = version;
+        }
+        return version;
+    }
+
     /**
      * Retrieves the parent file of the CodeSource location of this class
      * May return null if non existant
@@ -86,7 +130,7 @@ public final class ClassEnumerator {
      */
     public static List<Class<?>> filterByAnnotation(LoadedClasses input,
                                                     Class<? extends Annotation> annotation) {
-        return input.getClassMap().values().stream()
+        return input.getClasses().stream()
                 .filter(c -> c.isAnnotationPresent(annotation)).collect(Collectors.toList());
     }
 
@@ -128,7 +172,7 @@ public final class ClassEnumerator {
      */
     public static List<Class<?>> filterByAssignableFrom(LoadedClasses input,
                                                         Class<?> assignableFrom) {
-        return input.getClassMap().values().stream()
+        return input.getClasses().stream()
                 .filter(assignableFrom::isAssignableFrom).collect(Collectors.toList());
     }
 
@@ -156,39 +200,158 @@ public final class ClassEnumerator {
      * @return loadedClasses object
      */
     public static Map<String, LoadedClasses> loadClassesFromDirectory(File directory, boolean jarOnly) {
+        return loadClassesFromDirectory(directory, jarOnly, null);
+    }
+
+    /**
+     * Enumerates a directory for all class and jar files and loads only the classes matching the filter
+     * Class files are pre-scanned via {@link io.not2excel.util.ClassHeader} so non matching classes are never defined
+     * When loading .class files, this directory is expected to be top level directory for package
+     *
+     * @param directory directory to search
+     * @param jarOnly   load only Jar Files
+     * @param filter    pre-scan filter, null loads every class
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static Map<String, LoadedClasses> loadClassesFromDirectory(File directory, boolean jarOnly, ScanFilter filter) {
+        return loadClassesFromDirectory(directory, jarOnly, filter, null);
+    }
+
+    /**
+     * Enumerates a directory for all class and jar files and loads only the classes matching the filter
+     * Jars unchanged since they were recorded in the cache are not enumerated again
+     *
+     * @param directory directory to search
+     * @param jarOnly   load only Jar Files
+     * @param filter    pre-scan filter, null loads every class
+     * @param cache     scan cache for the filter, may be null
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static Map<String, LoadedClasses> loadClassesFromDirectory(File directory, boolean jarOnly, ScanFilter filter,
+                                                                      ScanCache cache) {
+        return loadClassesFromDirectory(directory, jarOnly, filter, cache, ClassScanner.getDefault());
+    }
+
+    /**
+     * Enumerates a directory for all class and jar files on the given scanner's pool
+     * The directory and every jar are loaded through the loaders pooled by {@link io.not2excel.util.ClassLoaderRegistry}
+     *
+     * @param directory directory to search
+     * @param jarOnly   load only Jar Files
+     * @param filter    pre-scan filter, null loads every class
+     * @param cache     scan cache for the filter, may be null
+     * @param scanner   scan engine to run on
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static Map<String, LoadedClasses> loadClassesFromDirectory(File directory, boolean jarOnly, ScanFilter filter,
+                                                                      ScanCache cache, ClassScanner scanner) {
+        return loadClassesFromDirectory(directory, jarOnly, filter, cache, scanner, ClassLoaderRegistry.getDefault());
+    }
+
+    /**
+     * Enumerates a directory for all class and jar files on the given scanner's pool
+     * The directory and every jar are loaded through the loaders pooled by the given registry
+     *
+     * @param directory directory to search
+     * @param jarOnly   load only Jar Files
+     * @param filter    pre-scan filter, null loads every class
+     * @param cache     scan cache for the filter, may be null
+     * @param scanner   scan engine to run on
+     * @param registry  registry pooling the directory and jar loaders
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static Map<String, LoadedClasses> loadClassesFromDirectory(File directory, boolean jarOnly, ScanFilter filter,
+                                                                      ScanCache cache, ClassScanner scanner,
+                                                                      ClassLoaderRegistry registry) {
         Map<String, LoadedClasses> loadedMap = new HashMap<>();
         ClassLoader classLoader;
         try {
-            classLoader = new URLClassLoader(new URL[]{directory.toURI().toURL()},
-                    ClassEnumerator.class.getClassLoader());
+            classLoader = registry.acquire(directory);
         } catch (MalformedURLException e) {
             logger.log(Level.WARNING, "Failed to create ClassLoader", e);
             return null;
         }
-        loadedMap.putAll(processFileTree(directory, classLoader, "", jarOnly));
+        loadedMap.putAll(scanner.scanDirectory(directory, classLoader, "", jarOnly, filter, cache, registry));
         return loadedMap;
     }
 
+    /**
+     * Loads every jar below a directory through its own isolated {@link io.not2excel.util.ModuleClassLoader}
+     * Jars are loaded in parallel, a class present in several jars is only defined by the first jar in path order
+     * Calls {@link io.not2excel.util.ClassScanner#scanJarsIsolated(List, ClassLoaderRegistry, ScanFilter, ScanCache)}
+     *
+     * @param directory directory to search
+     * @param registry  registry pooling the jar loaders
+     * @param filter    pre-scan filter, null loads every class
+     * @param cache     scan cache for the filter, may be null
+     * @param scanner   scan engine to run on
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static Map<String, LoadedClasses> loadClassesFromDirectoryIsolated(File directory, ClassLoaderRegistry registry,
+                                                                              ScanFilter filter, ScanCache cache,
+                                                                              ClassScanner scanner) {
+        return scanner.scanJarsIsolated(listJars(directory), registry, filter, cache);
+    }
+
+    /**
+     * Recursively lists the jar files below a directory
+     *
+     * @param directory directory to search
+     * @return jar files ordered by path
+     * @since 1.0.0
+     */
+    public static List<File> listJars(File directory) {
+        List<File> jars = new ArrayList<>();
+        collectJars(directory, jars);
+        jars.sort(Comparator.comparing(File::getPath));
+        return jars;
+    }
+
+    /**
+     * Recursively collects the jar files below a directory
+     *
+     * @param directory directory to search
+     * @param jars      list to add the jars to
+     */
+    private static void collectJars(File directory, List<File> jars) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectJars(file, jars);
+            } else if (file.getName().toLowerCase().trim().endsWith(".jar")) {
+                jars.add(file);
+            }
+        }
+    }
+
     /**
      * Retrieves all classes from a specific package, will only return the LoadedClasses object with the same key as the passed packageName
-     * This ignores the rest of the loaded classes from recursive enumeration
+     * Answered from the cached {@link io.not2excel.util.PackageIndex} of this code source, no enumeration after the first call
      *
      * @param packageName package name to return same classes from
      * @return relative LoadedClasses object
      */
     public static LoadedClasses loadClassesFromSinglePackage(String packageName) {
-        return loadClassesFromPackage(packageName).get(packageName);
+        return getPackageIndex().getPackage(packageName);
     }
 
     /**
      * Retrieves all classes from a specific package, will only return the LoadedClasses object relative to the passed Class
-     * This ignores the rest of the loaded classes from recursive enumeration
+     * Answered from the cached {@link io.not2excel.util.PackageIndex} of the class's code source
      *
      * @param clazz Class in Package to retrieve Classes from
      * @return relative LoadedClasses object
      */
     public static LoadedClasses loadClassesFromSinglePackage(Class<?> clazz) {
-        return loadClassesFromPackage(clazz).get(clazz.getPackage().getName());
+        return getPackageIndex(clazz).getPackage(packageName(clazz));
     }
 
     /**
@@ -198,49 +361,73 @@ public final class ClassEnumerator {
      * the same {@link java.security.ProtectionDomain#getCodeSource},
      * else this will fail and return a loadedClasses object that is empty
      * <p/>
-     * Calls {@link io.not2excel.util.ClassEnumerator#loadClassesFromPackage(java.lang.String, java.lang.String)}
+     * Returns the sub tree of {@link io.not2excel.util.ClassEnumerator#getPackageIndex()} at packageName
      *
      * @param packageName internal package name
      * @return loadedClasses object
      * @since 0.0.1
      */
     public static Map<String, LoadedClasses> loadClassesFromPackage(String packageName) {
-        if (packageName.contains(".")) {
-            packageName = packageName.replace(".", "/");
-        }
-        String codeSource = ClassEnumerator.class.getProtectionDomain().getCodeSource().getLocation().getPath();
-        return loadClassesFromPackage(packageName, codeSource);
+        return getPackageIndex().getPackages(packageName);
     }
 
     /**
      * Retrieves all classes from a specified package that the given class resides in
-     * Calls {@link io.not2excel.util.ClassEnumerator#loadClassesFromPackage(java.lang.String, java.lang.String)}
+     * Returns the sub tree of {@link io.not2excel.util.ClassEnumerator#getPackageIndex(Class)} at the class's package
      *
      * @param clazz class to pull code-source and package from
      * @return loadedClasses object
      * @since 0.0.1
      */
     public static Map<String, LoadedClasses> loadClassesFromPackage(Class<?> clazz) {
-        String packageName = clazz.getPackage().getName().replace(".", "/");
+        return getPackageIndex(clazz).getPackages(packageName(clazz));
+    }
+
+    /**
+     * Returns the package index of the code source ClassEnumerator resides in
+     * Calls {@link io.not2excel.util.ClassEnumerator#getPackageIndex(Class)}
+     *
+     * @return package index
+     * @since 1.0.0
+     */
+    public static PackageIndex getPackageIndex() {
+        return getPackageIndex(ClassEnumerator.class);
+    }
+
+    /**
+     * Returns the package index of the code source the given class resides in
+     * The code source is enumerated once on first use, later package queries are served from the index
+     *
+     * @param clazz class to pull code-source from
+     * @return package index
+     * @since 1.0.0
+     */
+    public static PackageIndex getPackageIndex(Class<?> clazz) {
         String codeSource = clazz.getProtectionDomain().getCodeSource().getLocation().getPath();
-        return loadClassesFromPackage(packageName, codeSource);
+        return packageIndexes.computeIfAbsent(codeSource, source -> {
+            Map<String, LoadedClasses> classes = scanCodeSource(source);
+            return PackageIndex.of(classes == null ? Collections.emptyMap() : classes);
+        });
     }
 
     /**
-     * Internal method to retrieve classes from a specified package and code-source
-     * Filtration in the case that the codeSource links to a .jar, will only return classes with passed packageName
+     * Drops every cached package index, the next query enumerates its code source again
      *
-     * @param packageName package name, can be with either separator "." or "/"
-     * @param codeSource  path of class origination
+     * @since 1.0.0
+     */
+    public static void clearPackageIndexes() {
+        packageIndexes.clear();
+    }
+
+    /**
+     * Internal method to enumerate every class of a code-source
+     *
+     * @param codeSource path of class origination
      * @return loadedClasses object
      * @since 0.0.1
      */
-    private static Map<String, LoadedClasses> loadClassesFromPackage(String packageName, String codeSource) {
+    private static Map<String, LoadedClasses> scanCodeSource(String codeSource) {
         boolean isJar = codeSource.endsWith(".jar");
-        codeSource += isJar ? "" : packageName;
-        if (!isJar) {
-            codeSource = codeSource.replace(".", "/");
-        }
         File file;
         try {
             file = new File(URLDecoder.decode(codeSource, "UTF-8"));
@@ -250,8 +437,7 @@ public final class ClassEnumerator {
         }
         ClassLoader classLoader;
         try {
-            classLoader = new URLClassLoader(new URL[]{file.toURI().toURL()},
-                    ClassEnumerator.class.getClassLoader());
+            classLoader = ClassLoaderRegistry.getDefault().acquire(file);
         } catch (MalformedURLException e) {
             logger.log(Level.WARNING, "Failed to create ClassLoader", e);
             return null;
@@ -260,7 +446,7 @@ public final class ClassEnumerator {
             LoadedClasses jarClasses = loadClassesFromJarUnformatted(file);
             return formatClasses(jarClasses);
         } else {
-            return processFileTree(file, classLoader, packageName, false);
+            return ClassScanner.getDefault().scanDirectory(file, classLoader, "", false, null, null);
         }
     }
 
@@ -309,44 +495,19 @@ public final class ClassEnumerator {
 
     /**
      * Formats the LoadedClasses object into a pretty mapping
-     * Mapping follows the same as processFileTree pkgName -> relative LoadedClasses object
+     * Mapping follows the same as directory scans pkgName -> relative LoadedClasses object
      *
      * @param classes LoadedClasses object
      * @return mapped classes
      */
     private static Map<String, LoadedClasses> formatClasses(LoadedClasses classes) {
-        return formatClasses(classes, null);
-    }
-
-    /**
-     * Formats the LoadedClasses object into a pretty mapping
-     * Mapping follows the same as processFileTree pkgName -> relative LoadedClasses object
-     *
-     * @param classes     LoadedClasses object
-     * @param curClassMap current mapping to push the formatted object to, avoids recreation of LoadedClasses objects, and prevents overwriting existing objects
-     * @return mapped classes
-     */
-    private static Map<String, LoadedClasses> formatClasses(LoadedClasses classes, Map<String, LoadedClasses> curClassMap) {
-        Map<String, LoadedClasses> classMap;
-        if (curClassMap == null) {
-            classMap = new HashMap<>();
-        } else {
-            classMap = new HashMap<>(curClassMap);
-        }
+        Map<String, LoadedClasses.Builder> builders = new HashMap<>();
         if (classes != null) {
-            classes.forEach(e -> {
-                String pkgName = e.getValue().getPackage().getName();
-                if (classMap.containsKey(pkgName)) {
-                    LoadedClasses curLoaded = classMap.get(pkgName);
-                    curLoaded.addClass(e.getValue());
-                    classMap.put(pkgName, curLoaded);
-                } else {
-                    LoadedClasses newLoaded = new LoadedClasses(classes.classLoader);
-                    newLoaded.addClass(e.getValue());
-                    classMap.put(pkgName, newLoaded);
-                }
-            });
+            classes.forEach(e -> builders.computeIfAbsent(packageName(e.getValue()),
+                    pkgName -> new LoadedClasses.Builder(classes.getClassLoader())).addClass(e.getValue()));
         }
+        Map<String, LoadedClasses> classMap = new HashMap<>(builders.size() * 2);
+        builders.forEach((pkgName, builder) -> classMap.put(pkgName, builder.build()));
         return classMap;
     }
 
@@ -360,15 +521,42 @@ public final class ClassEnumerator {
      * @since 0.0.1
      */
     public static LoadedClasses loadClassesFromJarUnformatted(File file) {
+        return loadClassesFromJarUnformatted(file, (ScanFilter) null);
+    }
+
+    /**
+     * Returns the relative {@link io.not2excel.util.ClassEnumerator.LoadedClasses} object created from pre-scanning a jar
+     * Calls {@link io.not2excel.util.ClassEnumerator#loadClassesFromJarUnformatted(java.io.File, java.lang.ClassLoader, ScanFilter)}
+     *
+     * @param file   file passed that *should* be a .jar file
+     * @param filter pre-scan filter, null loads every class
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static LoadedClasses loadClassesFromJarUnformatted(File file, ScanFilter filter) {
+        return loadClassesFromJarUnformatted(file, filter, null);
+    }
+
+    /**
+     * Returns the relative {@link io.not2excel.util.ClassEnumerator.LoadedClasses} object created from pre-scanning a jar
+     * Calls {@link io.not2excel.util.ClassEnumerator#loadClassesFromJarUnformatted(java.io.File, java.lang.ClassLoader, ScanFilter, ScanCache)}
+     * with the jar's loader from {@link io.not2excel.util.ClassLoaderRegistry#getDefault()}, reused across calls
+     *
+     * @param file   file passed that *should* be a .jar file
+     * @param filter pre-scan filter, null loads every class
+     * @param cache  scan cache for the filter, may be null
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static LoadedClasses loadClassesFromJarUnformatted(File file, ScanFilter filter, ScanCache cache) {
         ClassLoader classLoader;
         try {
-            classLoader = new URLClassLoader(new URL[]{file.toURI().toURL()},
-                    ClassEnumerator.class.getClassLoader());
+            classLoader = ClassLoaderRegistry.getDefault().acquire(file);
         } catch (MalformedURLException e) {
             logger.log(Level.WARNING, "Failed to create ClassLoader", e);
             return null;
         }
-        return loadClassesFromJarUnformatted(file, classLoader);
+        return loadClassesFromJarUnformatted(file, classLoader, filter, cache);
     }
 
     /**
@@ -380,77 +568,274 @@ public final class ClassEnumerator {
      * @since 0.0.1
      */
     public static LoadedClasses loadClassesFromJarUnformatted(File file, ClassLoader classLoader) {
-        LoadedClasses loadedClasses = new LoadedClasses(classLoader);
+        return loadClassesFromJarUnformatted(file, classLoader, null);
+    }
+
+    /**
+     * Returns the relative {@link io.not2excel.util.ClassEnumerator.LoadedClasses} object created from processing a jar
+     * When a filter is passed, every class file is first read as a {@link io.not2excel.util.ClassHeader}
+     * and only the classes matching the filter are loaded through the classLoader
+     *
+     * @param file        file passed that *should* be a .jar file
+     * @param classLoader relative classLoader
+     * @param filter      pre-scan filter, null loads every class
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static LoadedClasses loadClassesFromJarUnformatted(File file, ClassLoader classLoader, ScanFilter filter) {
+        return loadClassesFromJarUnformatted(file, classLoader, filter, null);
+    }
+
+    /**
+     * Returns the relative {@link io.not2excel.util.ClassEnumerator.LoadedClasses} object created from processing a jar
+     * A cache hit loads the recorded matches directly, a miss pre-scans the jar and records its matches
+     *
+     * @param file        file passed that *should* be a .jar file
+     * @param classLoader relative classLoader
+     * @param filter      pre-scan filter, null loads every class
+     * @param cache       scan cache for the filter, ignored without a filter, may be null
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    public static LoadedClasses loadClassesFromJarUnformatted(File file, ClassLoader classLoader, ScanFilter filter,
+                                                              ScanCache cache) {
+        return loadClassesFromJarUnformatted(file, null, classLoader, filter, cache);
+    }
+
+    /**
+     * Same as {@link #loadClassesFromJarUnformatted(File, ClassLoader, ScanFilter, ScanCache)} reusing a jar the
+     * caller already mapped, the caller closes it
+     *
+     * @param file        jar file
+     * @param jar         mapping of the file, null maps it here for the duration of the call
+     * @param classLoader relative classLoader
+     * @param filter      pre-scan filter, null loads every class
+     * @param cache       scan cache for the filter, ignored without a filter, may be null
+     * @return loadedClasses object
+     * @since 1.0.0
+     */
+    static LoadedClasses loadClassesFromJarUnformatted(File file, MappedJar jar, ClassLoader classLoader,
+                                                       ScanFilter filter, ScanCache cache) {
+        Object event = FlightEvents.beginJarScan();
+        int[] entries = new int[1];
+        List<String> cached = filter == null || cache == null ? null : cache.lookup(file);
+        LoadedClasses loadedClasses;
+        if (cached != null) {
+            LoadedClasses.Builder builder = new LoadedClasses.Builder(classLoader);
+            loadIndexed(cached, classLoader, filter, builder);
+            entries[0] = cached.size();
+            loadedClasses = builder.build();
+        } else if (filter != null) {
+            loadedClasses = prescanJar(file, jar, classLoader, filter, entries);
+            if (cache != null) {
+                cache.store(file, loadedClasses.getClasses().stream()
+                        .map(Class::getName).collect(Collectors.toList()));
+            }
+        } else {
+            LoadedClasses.Builder builder = new LoadedClasses.Builder(classLoader);
+            try {
+                List<String> names = jar == null ? listClassEntries(file) : listClassEntries(jar);
+                entries[0] = names.size();
+                names.forEach(name -> {
+                    Optional<Class<?>> clazz = Optional.ofNullable(loadClass(name, classLoader));
+                    if (clazz.isPresent()) {
+                        builder.addClass(clazz.get());
+                    }
+                });
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to create JarFile", e);
+            }
+            loadedClasses = builder.build();
+        }
+        if (event != null) {
+            FlightEvents.commitJarScan(event, file.getPath(), entries[0], loadedClasses.size(), file.length(),
+                    cached != null);
+        }
+        return loadedClasses;
+    }
+
+    /**
+     * Reads the header of every class in a jar and loads only those matching the filter
+     * Super types that live outside the jar are resolved through the classLoader's resources
+     *
+     * @param file        jar file
+     * @param mapped      mapping of the file, null maps it here and unmaps it once the headers are read
+     * @param classLoader relative classLoader
+     * @param filter      pre-scan filter
+     * @param entries     receives the number of class entries considered at index 0
+     * @return loadedClasses object containing only the matched classes
+     * @since 1.0.0
+     */
+    private static LoadedClasses prescanJar(File file, MappedJar mapped, ClassLoader classLoader, ScanFilter filter,
+                                            int[] entries) {
+        LoadedClasses.Builder loadedClasses = new LoadedClasses.Builder(classLoader);
+        Map<String, ClassHeader> headers;
+        MappedJar jar = mapped;
         try {
-            JarFile jarFile = new JarFile(file);
-            jarFile.stream().parallel().forEach(entry -> {
+            if (jar == null) {
+                jar = MappedJar.open(file);
+            }
+            MappedJar.Entry index = filter.getIndexResource() == null ? null : jar.getEntry(filter.getIndexResource());
+            if (index != null) {
+                try (InputStream in = new ByteBufferInputStream(jar.contents(index))) {
+                    List<String> classNames = filter.getIndexReader().read(in);
+                    entries[0] = classNames.size();
+                    loadIndexed(classNames, classLoader, filter, loadedClasses);
+                    return loadedClasses.build();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to read index of " + file + ", falling back to scanning", e);
+                }
+            }
+            headers = readClassHeaders(jar);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Failed to map " + file + ", falling back to JarFile", e);
+            headers = readClassHeaders(file);
+        } finally {
+            if (mapped == null && jar != null) {
+                jar.close();
+            }
+        }
+        entries[0] = headers.size();
+        ScanFilter.HierarchyResolver resolver = new ScanFilter.HierarchyResolver(headers, classLoader);
+        headers.values().stream().filter(h -> filter.matches(h, resolver)).forEach(h -> {
+            Optional<Class<?>> clazz = Optional.ofNullable(loadClass(h.getClassName(), classLoader));
+            if (clazz.isPresent() && filter.matches(clazz.get())) {
+                loadedClasses.addClass(clazz.get());
+            }
+        });
+        return loadedClasses.build();
+    }
+
+    /**
+     * Reads the header of every class in a mapped jar, stored entries are parsed in place
+     *
+     * @param jar mapped jar
+     * @return headers keyed by internal name
+     * @since 1.0.0
+     */
+    private static Map<String, ClassHeader> readClassHeaders(MappedJar jar) {
+        Map<String, ClassHeader> headers = new ConcurrentHashMap<>();
+        jar.getEntries().stream().filter(MappedJar.Entry::isClass).forEach(entry -> {
+            try {
+                ClassHeader header = ClassHeader.parse(jar.contents(entry));
+                headers.put(header.getName(), header);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to read class header " + entry.getName(), e);
+            }
+        });
+        return headers;
+    }
+
+    /**
+     * Reads the header of every class in a jar through {@link java.util.jar.JarFile}
+     * Fallback for jars that can't be mapped
+     *
+     * @param file jar file
+     * @return headers keyed by internal name, empty if the jar can't be read
+     * @since 1.0.0
+     */
+    private static Map<String, ClassHeader> readClassHeaders(File file) {
+        Map<String, ClassHeader> headers = new ConcurrentHashMap<>();
+        try (JarFile jarFile = new JarFile(file)) {
+            jarFile.stream().forEach(entry -> {
                 if (entry.isDirectory() || !entry.getName().toLowerCase().trim().endsWith(".class")) {
                     return;
                 }
-                Optional<Class<?>> clazz = Optional.ofNullable(loadClass(entry.getName(), classLoader));
-                if (clazz.isPresent()) {
-                    loadedClasses.addClass(clazz.get());
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    ClassHeader header = ClassHeader.parse(in);
+                    headers.put(header.getName(), header);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to read class header " + entry.getName(), e);
                 }
             });
-            jarFile.close();
         } catch (IOException e) {
             logger.log(Level.WARNING, "Failed to create JarFile", e);
         }
-        return loadedClasses;
+        return headers;
     }
 
     /**
-     * Internally processes a directory to retrieve the set of classes
-     * to later add to a {@link io.not2excel.util.ClassEnumerator.LoadedClasses} object
+     * Lists the class entry names of a jar from its central directory, falling back to {@link java.util.jar.JarFile}
      *
-     * @param classLoader relative classLoader
-     * @param directory   start directory of file tree
-     * @param prepend     prepended string to create fully qualified name
-     * @param jarOnly     load only Jar Files
-     * @return set of classes
-     * @since 0.0.1
+     * @param file jar file
+     * @return class entry names
+     * @throws IOException if the jar can't be read at all
+     * @since 1.0.0
      */
-    private static Map<String, LoadedClasses> processFileTree(File directory, ClassLoader classLoader,
-                                                              String prepend, boolean jarOnly) {
-        Map<String, LoadedClasses> classMap = new HashMap<>();
-        Optional<String[]> files = Optional.ofNullable(directory.list());
-        if (!files.isPresent()) {
-            return classMap;
-        }
-        LoadedClasses loaded = new LoadedClasses(classLoader);
-        Arrays.stream(files.get()).parallel().forEach(fileName -> {
-            Optional<String> className = Optional.empty();
-            if (!jarOnly) {
-                if (fileName.endsWith(".class")) {
-                    className = Optional.of(String.format("%s.%s", prepend, fileName));
-                }
-                if (className.isPresent()) {
-                    Optional<Class<?>> clazz = Optional.ofNullable(loadClass(className.get(), classLoader));
-                    if (clazz.isPresent()) {
-                        loaded.addClass(clazz.get());
-                    }
-                    return;
-                }
-            }
-            File subDir = new File(directory, fileName);
-            if (subDir.isDirectory()) {
-                classMap.putAll(processFileTree(subDir, classLoader,
-                        String.format("%s.%s", prepend, fileName), jarOnly));
-            } else if (subDir.getName().toLowerCase().trim().endsWith(".jar")) {
-                LoadedClasses jarClasses = loadClassesFromJarUnformatted(subDir);
-                Map<String, LoadedClasses> formatted = formatClasses(jarClasses, classMap);
-                classMap.clear();
-                classMap.putAll(formatted);
+    static List<String> listClassEntries(File file) throws IOException {
+        try (MappedJar jar = MappedJar.open(file)) {
+            return listClassEntries(jar);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Failed to map " + file + ", falling back to JarFile", e);
+        }
+        try (JarFile jarFile = new JarFile(file)) {
+            return jarFile.stream()
+                    .filter(entry -> !entry.isDirectory() && entry.getName().toLowerCase().trim().endsWith(".class"))
+                    .map(JarEntry::getName).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param jar mapped jar
+     * @return class entry names of the jar's central directory
+     * @since 1.0.0
+     */
+    static List<String> listClassEntries(MappedJar jar) {
+        return jar.getEntries().stream().filter(MappedJar.Entry::isClass)
+                .map(MappedJar.Entry::getName).collect(Collectors.toList());
+    }
+
+    /**
+     * Loads classes listed by an index, skipping enumeration
+     *
+     * @param classNames    binary class names
+     * @param classLoader   relative classLoader
+     * @param filter        filter to verify the loaded classes with, may be null
+     * @param loadedClasses builder to add the loaded classes to
+     * @since 1.0.0
+     */
+    private static void loadIndexed(Collection<String> classNames, ClassLoader classLoader, ScanFilter filter,
+                                    LoadedClasses.Builder loadedClasses) {
+        classNames.forEach(name -> {
+            Optional<Class<?>> clazz = Optional.ofNullable(loadClass(name, classLoader));
+            if (clazz.isPresent() && (filter == null || filter.matches(clazz.get()))) {
+                loadedClasses.addClass(clazz.get());
             }
         });
-        if (!loaded.isEmpty()) {
-            String pkg = prepend.replace("/", ".");
-            if (pkg.startsWith(".")) {
-                pkg = pkg.substring(1);
-            }
-            classMap.put(pkg, loaded);
+    }
+
+    /**
+     * Loads a known set of classes and maps them the same way as directory scans, pkgName -> relative LoadedClasses object
+     * Used when the class names are already known, i.e. from a prebuilt index
+     *
+     * @param classNames  binary class names
+     * @param classLoader relative classLoader
+     * @return mapped classes
+     * @since 1.0.0
+     */
+    public static Map<String, LoadedClasses> loadClasses(Collection<String> classNames, ClassLoader classLoader) {
+        LoadedClasses.Builder loadedClasses = new LoadedClasses.Builder(classLoader);
+        loadIndexed(classNames, classLoader, null, loadedClasses);
+        return formatClasses(loadedClasses.build());
+    }
+
+    /**
+     * Reads the header of a loose class file and checks it against the filter
+     *
+     * @param file     class file
+     * @param resolver resolver shared by the whole scan, so super type headers are read once
+     * @param filter   pre-scan filter
+     * @return true if the class should be loaded
+     * @since 1.0.0
+     */
+    static boolean prescanClassFile(File file, ScanFilter.HierarchyResolver resolver, ScanFilter filter) {
+        try (InputStream in = new FileInputStream(file)) {
+            ClassHeader header = ClassHeader.parse(in);
+            return filter.matches(header, resolver);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read class header " + file, e);
+            return false;
         }
-        return classMap;
     }
 
     /**
@@ -479,11 +864,18 @@ public final class ClassEnumerator {
         if (name.startsWith(".")) {
             name = name.substring(1);
         }
+        Object event = FlightEvents.beginClassLoad();
+        String error = null;
         try {
             retVal = classLoader.loadClass(name);
         } catch (ClassNotFoundException e) {
             logger.log(Level.WARNING, "Failed to load class " + name, e);
+            error = e.toString();
+        } catch (LinkageError e) {
+            FlightEvents.commitClassLoad(event, name, null, e.toString());
+            throw e;
         }
+        FlightEvents.commitClassLoad(event, name, retVal, error);
         return retVal;
     }
 
@@ -494,29 +886,46 @@ public final class ClassEnumerator {
      * @return package name
      */
     public static String packageName(Class<?> clazz) {
-        return clazz.getPackage().getName();
+        Package pkg = clazz.getPackage();
+        if (pkg != null) {
+            return pkg.getName();
+        }
+        int index = clazz.getName().lastIndexOf('.');
+        return index < 0 ? "" : clazz.getName().substring(0, index);
     }
 
     /**
-     * Contains the set of loaded classes and the relative classLoader
+     * Read-only snapshot of a set of loaded classes and the relative classLoader
+     * Classes are kept in two parallel arrays sorted by name, lookups are a binary search
+     * and iteration walks the arrays directly. Instances are built through {@link LoadedClasses.Builder}.
      *
      * @author not2excel
-     * @version 0.0.1
+     * @version 1.0.0
      * @since 0.0.1
      */
     public static final class LoadedClasses implements Iterable<Entry<String, Class<?>>> {
 
+        private static final String[] NO_NAMES = new String[0];
+        private static final Class<?>[] NO_CLASSES = new Class<?>[0];
+
         private final ClassLoader classLoader;
-        private final Map<String, Class<?>> classMap = new HashMap<>();
+        private final String[] names;
+        private final Class<?>[] classes;
 
         /**
-         * Initializes with a specific ClassLoader
+         * Initializes an empty snapshot with a specific ClassLoader
          *
          * @param classLoader ClassLoader instance
          * @since 0.0.1
          */
         public LoadedClasses(ClassLoader classLoader) {
+            this(classLoader, NO_NAMES, NO_CLASSES);
+        }
+
+        private LoadedClasses(ClassLoader classLoader, String[] names, Class<?>[] classes) {
             this.classLoader = classLoader;
+            this.names = names;
+            this.classes = classes;
         }
 
         /**
@@ -526,80 +935,58 @@ public final class ClassEnumerator {
          * @return class if found, else null
          * @since 0.0.1
          */
-        public synchronized Class<?> get(String className) {
-            return this.classMap.get(className);
-        }
-
-        /**
-         * Adds a class to the classMap
-         * class is loaded via relative classLoader
-         *
-         * @param clazz Class to add to classMap
-         * @since 0.0.1
-         */
-        public synchronized void addClass(Class<?> clazz) {
-            if (this.classMap.containsKey(clazz.getCanonicalName())) {
-                logger.log(Level.WARNING, clazz.getName() + " => Already loaded. Skipping loading.");
-                return;
-            }
-            this.classMap.put(clazz.getCanonicalName(), clazz);
-        }
-
-        /**
-         * Adds a varargs of class to the classMap via {@link #addClass(Class) addClass}
-         *
-         * @param classes classes to add to classMap
-         * @since 0.0.1
-         */
-        public void addClasses(Class<?>... classes) {
-            for (Class<?> clazz : classes) {
-                this.addClass(clazz);
-            }
-        }
-
-        /**
-         * Adds a set of class to the classMap via {@link #addClass(Class) addClass}
-         *
-         * @param classes classes to add to classMap
-         * @since 0.0.1
-         */
-        public void addClasses(Set<Class<?>> classes) {
-            for (Class<?> clazz : classes) {
-                this.addClass(clazz);
-            }
+        public Class<?> get(String className) {
+            int index = className == null ? -1 : Arrays.binarySearch(this.names, className);
+            return index < 0 ? null : this.classes[index];
         }
 
         /**
          * Wrapper for checking if this object is empty
          *
-         * @return HashMap::isEmpty
+         * @return true if no classes are contained
          */
         public boolean isEmpty() {
-            return this.classMap.isEmpty();
+            return this.classes.length == 0;
         }
 
         /**
          * Wrapper for checking the size of this object
          *
-         * @return HashMap::size
+         * @return number of classes
          */
         public int size() {
-            return this.classMap.size();
+            return this.classes.length;
         }
 
         @Override
         public Iterator<Entry<String, Class<?>>> iterator() {
-            return this.classMap.entrySet().iterator();
+            return new Iterator<Entry<String, Class<?>>>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < classes.length;
+                }
+
+                @Override
+                public Entry<String, Class<?>> next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int current = this.index++;
+                    return new AbstractMap.SimpleImmutableEntry<>(names[current], classes[current]);
+                }
+            };
         }
 
         @Override
         public String toString() {
             StringBuilder builder = new StringBuilder();
-            this.classMap.forEach((s, c) -> {
-                builder.append(c.getSimpleName()).append(" => ").append(s);
+            for (int i = 0; i < this.classes.length; i++) {
+                builder.append(this.classes[i].getSimpleName()).append(" => ").append(this.names[i]);
                 builder.append("\n");
-            });
-            return builder.substring(0, builder.length() - 1);
+            }
+            return builder.length() == 0 ? "" : builder.substring(0, builder.length() - 1);
         }
 
         /**
@@ -613,17 +1000,157 @@ public final class ClassEnumerator {
             if (isEmpty()) {
                 throw new RuntimeException("Can't retrieve proper package name, due to empty object.");
             }
-            return this.classMap.values().iterator().next().getPackage().getName();
+            return this.classes[0].getPackage().getName();
         }
 
         public ClassLoader getClassLoader() {
             return this.classLoader;
         }
 
+        /**
+         * @return read-only list view of the contained classes, sorted by name
+         * @since 1.0.0
+         */
+        public List<Class<?>> getClasses() {
+            return Collections.unmodifiableList(Arrays.asList(this.classes));
+        }
+
+        /**
+         * @return read-only map view keyed by canonical name, backed by this snapshot
+         */
         public Map<String, Class<?>> getClassMap() {
-            return this.classMap;
+            return new AbstractMap<String, Class<?>>() {
+                @Override
+                public Class<?> get(Object key) {
+                    return key instanceof String ? LoadedClasses.this.get((String) key) : null;
+                }
+
+                @Override
+                public boolean containsKey(Object key) {
+                    return this.get(key) != null;
+                }
+
+                @Override
+                public int size() {
+                    return classes.length;
+                }
+
+                @Override
+                public Set<Entry<String, Class<?>>> entrySet() {
+                    return new AbstractSet<Entry<String, Class<?>>>() {
+                        @Override
+                        public Iterator<Entry<String, Class<?>>> iterator() {
+                            return LoadedClasses.this.iterator();
+                        }
+
+                        @Override
+                        public int size() {
+                            return classes.length;
+                        }
+                    };
+                }
+            };
         }
 
+        /**
+         * Concurrent builder for {@link LoadedClasses}
+         * Adds from many threads go into a ConcurrentHashMap and never take a global lock,
+         * {@link #build()} freezes the current contents into a sorted array snapshot.
+         *
+         * @author not2excel
+         * @version 1.0.0
+         * @since 1.0.0
+         */
+        public static final class Builder {
+
+            private final ClassLoader classLoader;
+            private final ConcurrentMap<String, Class<?>> classMap = new ConcurrentHashMap<>();
+
+            /**
+             * @param classLoader ClassLoader the added classes were loaded by
+             */
+            public Builder(ClassLoader classLoader) {
+                this.classLoader = classLoader;
+            }
+
+            /**
+             * Starts from the contents of an existing snapshot
+             *
+             * @param loadedClasses snapshot to copy
+             */
+            public Builder(LoadedClasses loadedClasses) {
+                this(loadedClasses.classLoader);
+                for (int i = 0; i < loadedClasses.classes.length; i++) {
+                    this.classMap.put(loadedClasses.names[i], loadedClasses.classes[i]);
+                }
+            }
+
+            /**
+             * Adds a class, keyed by canonical name or binary name for local and anonymous classes
+             * Duplicates are skipped with a warning
+             *
+             * @param clazz Class to add
+             * @return this builder
+             */
+            public Builder addClass(Class<?> clazz) {
+                String name = clazz.getCanonicalName();
+                if (name == null) {
+                    name = clazz.getName();
+                }
+                if (this.classMap.putIfAbsent(name, clazz) != null) {
+                    logger.log(Level.WARNING, clazz.getName() + " => Already loaded. Skipping loading.");
+                }
+                return this;
+            }
 
+            /**
+             * Adds a varargs of class via {@link #addClass(Class) addClass}
+             *
+             * @param classes classes to add
+             * @return this builder
+             */
+            public Builder addClasses(Class<?>... classes) {
+                for (Class<?> clazz : classes) {
+                    this.addClass(clazz);
+                }
+                return this;
+            }
+
+            /**
+             * Adds a set of class via {@link #addClass(Class) addClass}
+             *
+             * @param classes classes to add
+             * @return this builder
+             */
+            public Builder addClasses(Set<Class<?>> classes) {
+                for (Class<?> clazz : classes) {
+                    this.addClass(clazz);
+                }
+                return this;
+            }
+
+            public boolean isEmpty() {
+                return this.classMap.isEmpty();
+            }
+
+            public int size() {
+                return this.classMap.size();
+            }
+
+            /**
+             * Freezes the classes added so far, the builder stays usable
+             *
+             * @return read-only snapshot
+             */
+            public LoadedClasses build() {
+                String[] names = this.classMap.keySet().toArray(new String[0]);
+                Arrays.sort(names);
+                Class<?>[] classes = new Class<?>[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    classes[i] = this.classMap.get(names[i]);
+                }
+                return new LoadedClasses(this.classLoader, names, classes);
+            }
+        }
     }
 }
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal view of a class file read straight from its bytes.
+ * Only the constant pool, the class hierarchy and the class level RuntimeVisibleAnnotations
+ * are parsed, nothing is defined through a ClassLoader.
+ * All names are kept in internal form, i.e. "io/not2excel/module/context/Module"
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ClassHeader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+    private static final int ACC_ANNOTATION = 0x2000;
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private final int access;
+    private final String name;
+    private final String superName;
+    private final List<String> interfaces;
+    private final List<String> annotations;
+
+    private ClassHeader(int access, String name, String superName, String[] interfaces, String[] annotations) {
+        this.access = access;
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = Collections.unmodifiableList(Arrays.asList(interfaces));
+        this.annotations = Collections.unmodifiableList(Arrays.asList(annotations));
+    }
+
+    /**
+     * Reads a class header from a fully buffered class file
+     *
+     * @param data class file bytes
+     * @return parsed header
+     * @throws IOException if the data is not a valid class file
+     * @since 1.0.0
+     */
+    public static ClassHeader parse(byte[] data) throws IOException {
+        return parse(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Reads a class header from a stream, the stream is read fully but not closed
+     *
+     * @param in class file stream
+     * @return parsed header
+     * @throws IOException if the stream fails or is not a valid class file
+     * @since 1.0.0
+     */
+    public static ClassHeader parse(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return parse(out.toByteArray());
+    }
+
+    /**
+     * Reads a class header from a buffer positioned at the start of a class file
+     * The buffer's position is advanced, its contents are never copied
+     *
+     * @param buffer class file buffer
+     * @return parsed header
+     * @throws IOException if the data is not a valid class file
+     * @since 1.0.0
+     */
+    public static ClassHeader parse(ByteBuffer buffer) throws IOException {
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated or malformed class file", e);
+        }
+    }
+
+    private static ClassHeader read(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        buffer.getInt(); // minor + major version
+        int poolCount = buffer.getShort() & 0xFFFF;
+        int[] offsets = new int[poolCount];
+        byte[] tags = new byte[poolCount];
+        for (int i = 1; i < poolCount; i++) {
+            byte tag = buffer.get();
+            tags[i] = tag;
+            offsets[i] = buffer.position();
+            switch (tag) {
+                case 1: // Utf8
+                    buffer.position(buffer.position() + 2 + (buffer.getShort(buffer.position()) & 0xFFFF));
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    buffer.position(buffer.position() + 2);
+                    break;
+                case 15: // MethodHandle
+                    buffer.position(buffer.position() + 3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    buffer.position(buffer.position() + 4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    buffer.position(buffer.position() + 8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+            }
+        }
+        ConstantPool pool = new ConstantPool(buffer, offsets, tags);
+        int access = buffer.getShort() & 0xFFFF;
+        String name = pool.className(buffer.getShort() & 0xFFFF);
+        int superIndex = buffer.getShort() & 0xFFFF;
+        String superName = superIndex == 0 ? null : pool.className(superIndex);
+        String[] interfaces = new String[buffer.getShort() & 0xFFFF];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = pool.className(buffer.getShort() & 0xFFFF);
+        }
+        skipMembers(buffer); // fields
+        skipMembers(buffer); // methods
+        String[] annotations = new String[0];
+        int attributeCount = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < attributeCount; i++) {
+            String attributeName = pool.utf8(buffer.getShort() & 0xFFFF);
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+                annotations = new String[buffer.getShort() & 0xFFFF];
+                for (int a = 0; a < annotations.length; a++) {
+                    annotations[a] = descriptorToName(pool.utf8(buffer.getShort() & 0xFFFF));
+                    skipAnnotationBody(buffer);
+                }
+            }
+            buffer.position(end);
+        }
+        return new ClassHeader(access, name, superName, interfaces, annotations);
+    }
+
+    private static void skipMembers(ByteBuffer buffer) {
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            buffer.position(buffer.position() + 6); // access, name, descriptor
+            skipAttributes(buffer);
+        }
+    }
+
+    private static void skipAttributes(ByteBuffer buffer) {
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            buffer.position(buffer.position() + 2);
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private static void skipAnnotationBody(ByteBuffer buffer) throws IOException {
+        int pairs = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < pairs; i++) {
+            buffer.position(buffer.position() + 2); // element name
+            skipElementValue(buffer);
+        }
+    }
+
+    private static void skipElementValue(ByteBuffer buffer) throws IOException {
+        char tag = (char) buffer.get();
+        switch (tag) {
+            case 'B':
+            case 'C':
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 'S':
+            case 'Z':
+            case 's':
+            case 'c':
+                buffer.position(buffer.position() + 2);
+                break;
+            case 'e':
+                buffer.position(buffer.position() + 4);
+                break;
+            case '@':
+                buffer.position(buffer.position() + 2);
+                skipAnnotationBody(buffer);
+                break;
+            case '[':
+                int count = buffer.getShort() & 0xFFFF;
+                for (int i = 0; i < count; i++) {
+                    skipElementValue(buffer);
+                }
+                break;
+            default:
+                throw new IOException("Unknown annotation element tag " + tag);
+        }
+    }
+
+    private static String descriptorToName(String descriptor) {
+        if (descriptor.startsWith("L") && descriptor.endsWith(";")) {
+            return descriptor.substring(1, descriptor.length() - 1);
+        }
+        return descriptor;
+    }
+
+    /**
+     * Converts a class to its internal name
+     *
+     * @param clazz class to convert
+     * @return internal name
+     * @since 1.0.0
+     */
+    public static String internalName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/');
+    }
+
+    /**
+     * @return raw class access flags
+     */
+    public int getAccess() {
+        return this.access;
+    }
+
+    /**
+     * @return true if the class is an interface or annotation type
+     */
+    public boolean isInterface() {
+        return (this.access & ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * @return true if the class is abstract, interfaces are always abstract
+     */
+    public boolean isAbstract() {
+        return (this.access & ACC_ABSTRACT) != 0;
+    }
+
+    /**
+     * @return true if the class is an annotation type
+     */
+    public boolean isAnnotation() {
+        return (this.access & ACC_ANNOTATION) != 0;
+    }
+
+    /**
+     * @return internal name of this class
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return binary name of this class, suitable for {@link ClassLoader#loadClass(String)}
+     */
+    public String getClassName() {
+        return this.name.replace('/', '.');
+    }
+
+    /**
+     * @return internal name of the super class, null for java/lang/Object and module-info
+     */
+    public String getSuperName() {
+        return this.superName;
+    }
+
+    /**
+     * @return internal names of directly implemented interfaces
+     */
+    public List<String> getInterfaces() {
+        return this.interfaces;
+    }
+
+    /**
+     * @return internal names of runtime visible annotations present directly on the class
+     */
+    public List<String> getAnnotations() {
+        return this.annotations;
+    }
+
+    /**
+     * Checks for a runtime visible annotation directly on this class
+     *
+     * @param internalName internal name of the annotation type
+     * @return true if present
+     */
+    public boolean hasAnnotation(String internalName) {
+        return this.annotations.contains(internalName);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClassName() + " extends " + this.superName + " implements " + this.interfaces
+                + " annotated " + this.annotations;
+    }
+
+    /**
+     * Lazily decodes constant pool entries that are actually referenced
+     */
+    private static final class ConstantPool {
+
+        private final ByteBuffer buffer;
+        private final int[] offsets;
+        private final byte[] tags;
+
+        ConstantPool(ByteBuffer buffer, int[] offsets, byte[] tags) {
+            this.buffer = buffer;
+            this.offsets = offsets;
+            this.tags = tags;
+        }
+
+        String className(int index) throws IOException {
+            check(index, 7);
+            return utf8(this.buffer.getShort(this.offsets[index]) & 0xFFFF);
+        }
+
+        String utf8(int index) throws IOException {
+            check(index, 1);
+            int offset = this.offsets[index];
+            int length = this.buffer.getShort(offset) & 0xFFFF;
+            return decodeModifiedUtf8(this.buffer, offset + 2, length);
+        }
+
+        private void check(int index, int tag) throws IOException {
+            if (index <= 0 || index >= this.tags.length || this.tags[index] != tag) {
+                throw new IOException("Invalid constant pool reference " + index);
+            }
+        }
+
+        private static String decodeModifiedUtf8(ByteBuffer buffer, int offset, int length) throws IOException {
+            char[] chars = new char[length];
+            int count = 0;
+            int end = offset + length;
+            int i = offset;
+            while (i < end) {
+                int b = buffer.get(i++) & 0xFF;
+                if (b < 0x80) {
+                    chars[count++] = (char) b;
+                } else if ((b & 0xE0) == 0xC0) {
+                    int b2 = buffer.get(i++) & 0x3F;
+                    chars[count++] = (char) (((b & 0x1F) << 6) | b2);
+                } else if ((b & 0xF0) == 0xE0) {
+                    int b2 = buffer.get(i++) & 0x3F;
+                    int b3 = buffer.get(i++) & 0x3F;
+                    chars[count++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+                } else {
+                    throw new IOException("Malformed modified UTF-8 in constant pool");
+                }
+            }
+            return new String(chars, 0, count);
+        }
+    }
+}
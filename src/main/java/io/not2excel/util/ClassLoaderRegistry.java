@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of class loaders keyed by the jar or directory they load from.
+ * Repeated scans of the same location share one loader instead of opening a new one each time.
+ * Every module class defined by a pooled loader is tracked, once the last of them is released
+ * the loader is closed and dropped, freeing its file handles and letting its classes be collected.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ClassLoaderRegistry {
+
+    private static final Logger logger = Logger.getLogger("ClassLoaderRegistry");
+    private static final ClassLoaderRegistry defaultRegistry = new ClassLoaderRegistry(
+            ClassLoaderRegistry.class.getClassLoader());
+
+    private final ClassLoader parent;
+    private final ConcurrentMap<String, Handle> handles = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ClassLoader, Handle> owners = new ConcurrentHashMap<>();
+
+    /**
+     * @param parent parent of every pooled loader
+     * @since 1.0.0
+     */
+    public ClassLoaderRegistry(ClassLoader parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Shared registry used by {@link ClassEnumerator}, its loaders are children of the module-api loader
+     *
+     * @return default registry
+     * @since 1.0.0
+     */
+    public static ClassLoaderRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    /**
+     * Returns the open loader of a location, creating it if none exists or the previous one was closed
+     *
+     * @param location jar file or class directory
+     * @return pooled loader
+     * @throws MalformedURLException if the location can't be turned into a URL
+     * @since 1.0.0
+     */
+    public URLClassLoader acquire(File location) throws MalformedURLException {
+        return this.acquire(location, (url, parent) -> new URLClassLoader(new URL[]{url}, parent));
+    }
+
+    /**
+     * Returns the open loader of a location, creating it through the factory if none exists
+     * An already pooled loader is returned as is, even if the factory would create a different type
+     *
+     * @param location jar file or class directory
+     * @param factory  creates a loader from the location's URL and the registry's parent
+     * @return pooled loader
+     * @throws MalformedURLException if the location can't be turned into a URL
+     * @since 1.0.0
+     */
+    public URLClassLoader acquire(File location, BiFunction<URL, ClassLoader, URLClassLoader> factory)
+            throws MalformedURLException {
+        URL url = location.toURI().toURL();
+        return this.handles.compute(key(location), (key, handle) -> {
+            if (handle == null) {
+                handle = new Handle(key, factory.apply(url, this.parent));
+                this.owners.put(handle.loader, handle);
+            }
+            return handle;
+        }).loader;
+    }
+
+    /**
+     * Records a class as defined by its pooled loader, keeping the loader open until the class is released
+     * Classes of loaders this registry doesn't own are ignored
+     *
+     * @param clazz loaded module class
+     * @return true if the class's loader is pooled by this registry and still open
+     * @since 1.0.0
+     */
+    public boolean track(Class<?> clazz) {
+        Handle owner = this.find(clazz.getClassLoader());
+        if (owner == null) {
+            return false;
+        }
+        boolean[] tracked = new boolean[1];
+        this.handles.computeIfPresent(owner.key, (key, handle) -> {
+            if (handle == owner) {
+                handle.classes.add(clazz.getName());
+                tracked[0] = true;
+            }
+            return handle;
+        });
+        return tracked[0];
+    }
+
+    /**
+     * Releases a tracked class, closes and drops its loader once no tracked class is left
+     *
+     * @param clazz unloaded module class
+     * @return true if the loader was closed
+     * @since 1.0.0
+     */
+    public boolean release(Class<?> clazz) {
+        Handle owner = this.find(clazz.getClassLoader());
+        if (owner == null) {
+            return false;
+        }
+        boolean[] closed = new boolean[1];
+        this.handles.computeIfPresent(owner.key, (key, handle) -> {
+            if (handle != owner || !handle.classes.remove(clazz.getName()) || !handle.classes.isEmpty()) {
+                return handle;
+            }
+            closed[0] = true;
+            this.close(handle);
+            return null;
+        });
+        if (owner.detached) {
+            synchronized (owner) {
+                if (owner.classes.remove(clazz.getName()) && owner.classes.isEmpty()) {
+                    closed[0] = true;
+                    this.close(owner);
+                }
+            }
+        }
+        return closed[0];
+    }
+
+    /**
+     * Detaches the loader of a location from the pool, the next acquire creates a fresh loader
+     * The old loader is closed right away if it has no tracked class, otherwise once its last tracked class is released.
+     * Used to pick up a jar that changed on disk.
+     *
+     * @param location jar file or class directory
+     * @return true if a loader was pooled for the location
+     * @since 1.0.0
+     */
+    public boolean renew(File location) {
+        boolean[] renewed = new boolean[1];
+        this.handles.computeIfPresent(key(location), (key, handle) -> {
+            renewed[0] = true;
+            if (handle.classes.isEmpty()) {
+                this.close(handle);
+            } else {
+                handle.detached = true;
+            }
+            return null;
+        });
+        return renewed[0];
+    }
+
+    /**
+     * Closes the loaders of the given locations that have no tracked class, i.e. jars a scan acquired without
+     * yielding a loaded or registered module. Call once the modules of that scan have been loaded,
+     * loaders of other locations are left alone as their classes may still be in use.
+     *
+     * @param locations jar files or class directories the scan acquired loaders for
+     * @return number of closed loaders
+     * @since 1.0.0
+     */
+    public int releaseUnused(Collection<File> locations) {
+        int closed = 0;
+        for (File location : locations) {
+            if (this.releaseUnused(location)) {
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Closes the loader of a location if it has no tracked class, i.e. it was acquired for classes that were discarded
+     *
+     * @param location jar file or class directory
+     * @return true if the loader was closed
+     * @since 1.0.0
+     */
+    public boolean releaseUnused(File location) {
+        boolean[] removed = new boolean[1];
+        this.handles.computeIfPresent(key(location), (key, handle) -> {
+            if (!handle.classes.isEmpty()) {
+                return handle;
+            }
+            removed[0] = true;
+            this.close(handle);
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * @param classLoader any loader
+     * @return true if the loader is pooled and still open
+     */
+    public boolean isPooled(ClassLoader classLoader) {
+        return this.find(classLoader) != null;
+    }
+
+    /**
+     * @param location jar file or class directory
+     * @return true if an open loader is pooled for the location
+     */
+    public boolean isPooled(File location) {
+        return this.handles.containsKey(key(location));
+    }
+
+    /**
+     * @return number of open pooled loaders
+     */
+    public int size() {
+        return this.handles.size();
+    }
+
+    private Handle find(ClassLoader classLoader) {
+        return classLoader == null ? null : this.owners.get(classLoader);
+    }
+
+    private void close(Handle handle) {
+        this.owners.remove(handle.loader);
+        try {
+            handle.loader.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close ClassLoader of " + handle.key, e);
+        }
+    }
+
+    private static String key(File location) {
+        try {
+            return location.getCanonicalPath();
+        } catch (IOException e) {
+            return location.getAbsolutePath();
+        }
+    }
+
+    /**
+     * A pooled loader and the classes keeping it open, only mutated inside the map's compute functions
+     * until detached, then only while synchronized on it
+     */
+    private static final class Handle {
+
+        private final String key;
+        private final URLClassLoader loader;
+        private final Set<String> classes = new HashSet<>();
+        private volatile boolean detached;
+
+        Handle(String key, URLClassLoader loader) {
+            this.key = key;
+            this.loader = loader;
+        }
+    }
+}
@@ -0,0 +1,547 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import io.not2excel.util.ClassEnumerator.LoadedClasses;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scan engine running directory and jar enumeration on its own work-stealing pool.
+ * Every directory and every jar is a separate task, idle workers steal pending jars from busy ones.
+ * Results are aggregated into a concurrent map, the common ForkJoinPool is never used.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ClassScanner implements Closeable {
+
+    private static final Logger logger = Logger.getLogger("ClassScanner");
+    private static final AtomicInteger poolIds = new AtomicInteger();
+    private static final Object END_OF_SCAN = new Object();
+    private static volatile ClassScanner defaultScanner;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a scanner with its own pool
+     *
+     * @param parallelism maximum number of threads scanning at once
+     * @since 1.0.0
+     */
+    public ClassScanner(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive, was " + parallelism);
+        }
+        int poolId = poolIds.incrementAndGet();
+        AtomicInteger threadIds = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("module-scan-" + poolId + "-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (thread, e) -> logger.log(Level.SEVERE, "Uncaught exception in " + thread.getName(), e), false);
+    }
+
+    /**
+     * Shared scanner used by the static {@link ClassEnumerator} methods, one thread per available processor
+     * Its threads are daemons, it is never closed
+     *
+     * @return default scanner
+     * @since 1.0.0
+     */
+    public static ClassScanner getDefault() {
+        ClassScanner scanner = defaultScanner;
+        if (scanner == null) {
+            synchronized (ClassScanner.class) {
+                scanner = defaultScanner;
+                if (scanner == null) {
+                    scanner = new ClassScanner(Runtime.getRuntime().availableProcessors());
+                    defaultScanner = scanner;
+                }
+            }
+        }
+        return scanner;
+    }
+
+    /**
+     * Recursively scans a directory for class and jar files
+     * Loose class files are loaded through the passed classLoader, every jar gets its own loader
+     *
+     * @param directory   directory to scan
+     * @param classLoader classLoader for loose class files
+     * @param prepend     package of the directory in either "." or "/" form, "" for a root directory
+     * @param jarOnly     load only Jar Files
+     * @param filter      pre-scan filter, null loads every class
+     * @param cache       scan cache for the filter, may be null
+     * @return classes mapped by package name
+     * @since 1.0.0
+     */
+    public Map<String, LoadedClasses> scanDirectory(File directory, ClassLoader classLoader, String prepend,
+                                                    boolean jarOnly, ScanFilter filter, ScanCache cache) {
+        return this.scanDirectory(directory, classLoader, prepend, jarOnly, filter, cache,
+                ClassLoaderRegistry.getDefault());
+    }
+
+    /**
+     * Recursively scans a directory for class and jar files, every jar is loaded through its loader pooled by the registry
+     *
+     * @param directory   directory to scan
+     * @param classLoader classLoader for loose class files
+     * @param prepend     package of the directory in either "." or "/" form, "" for a root directory
+     * @param jarOnly     load only Jar Files
+     * @param filter      pre-scan filter, null loads every class
+     * @param cache       scan cache for the filter, may be null
+     * @param registry    registry pooling the jar loaders
+     * @return classes mapped by package name
+     * @since 1.0.0
+     */
+    public Map<String, LoadedClasses> scanDirectory(File directory, ClassLoader classLoader, String prepend,
+                                                    boolean jarOnly, ScanFilter filter, ScanCache cache,
+                                                    ClassLoaderRegistry registry) {
+        ConcurrentMap<String, LoadedClasses.Builder> results = new ConcurrentHashMap<>();
+        Scan scan = new Scan(classLoader, registry, jarOnly, filter, cache, results, null);
+        this.pool.invoke(new DirectoryTask(scan, directory, prepend));
+        return freeze(results);
+    }
+
+    /**
+     * Starts scanning a directory in the background and streams every class as soon as its jar or directory is done
+     * Consumers can process early results while later jars are still being scanned.
+     * The stream blocks while waiting for more results and ends once the whole tree is scanned.
+     * If the scan fails the stream throws an IllegalStateException carrying the cause instead of ending early.
+     *
+     * @param directory   directory to scan
+     * @param classLoader classLoader for loose class files
+     * @param jarOnly     load only Jar Files
+     * @param filter      pre-scan filter, null streams every class
+     * @param cache       scan cache for the filter, may be null
+     * @return sequential stream of discovered classes
+     * @since 1.0.0
+     */
+    public Stream<Class<?>> discover(File directory, ClassLoader classLoader, boolean jarOnly, ScanFilter filter,
+                                     ScanCache cache) {
+        return this.discover(directory, classLoader, jarOnly, filter, cache, ClassLoaderRegistry.getDefault());
+    }
+
+    /**
+     * Same as {@link #discover(File, ClassLoader, boolean, ScanFilter, ScanCache)}, every jar is loaded through
+     * its loader pooled by the registry
+     *
+     * @param directory   directory to scan
+     * @param classLoader classLoader for loose class files
+     * @param jarOnly     load only Jar Files
+     * @param filter      pre-scan filter, null streams every class
+     * @param cache       scan cache for the filter, may be null
+     * @param registry    registry pooling the jar loaders
+     * @return sequential stream of discovered classes
+     * @since 1.0.0
+     */
+    public Stream<Class<?>> discover(File directory, ClassLoader classLoader, boolean jarOnly, ScanFilter filter,
+                                     ScanCache cache, ClassLoaderRegistry registry) {
+        BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        Scan scan = new Scan(classLoader, registry, jarOnly, filter, cache, null, queue::add);
+        DirectoryTask root = new DirectoryTask(scan, directory, "");
+        this.pool.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                try {
+                    root.invoke();
+                    queue.add(END_OF_SCAN);
+                } catch (Throwable t) {
+                    queue.add(new ScanFailure(t));
+                }
+            }
+        });
+        Spliterator<Class<?>> spliterator = new Spliterators.AbstractSpliterator<Class<?>>(Long.MAX_VALUE,
+                Spliterator.NONNULL | Spliterator.DISTINCT) {
+            private boolean done;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Class<?>> action) {
+                if (this.done) {
+                    return false;
+                }
+                Object next;
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    this.done = true;
+                    return false;
+                }
+                if (next == END_OF_SCAN) {
+                    this.done = true;
+                    return false;
+                }
+                if (next instanceof ScanFailure) {
+                    this.done = true;
+                    throw new IllegalStateException("Scan of " + directory + " failed",
+                            ((ScanFailure) next).cause);
+                }
+                action.accept((Class<?>) next);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Scans a set of jars, one task per jar
+     *
+     * @param jars   jar files
+     * @param filter pre-scan filter, null loads every class
+     * @param cache  scan cache for the filter, may be null
+     * @return classes mapped by package name
+     * @since 1.0.0
+     */
+    public Map<String, LoadedClasses> scanJars(List<File> jars, ScanFilter filter, ScanCache cache) {
+        ConcurrentMap<String, LoadedClasses.Builder> results = new ConcurrentHashMap<>();
+        Scan scan = new Scan(null, ClassLoaderRegistry.getDefault(), true, filter, cache, results, null);
+        List<JarTask> tasks = new ArrayList<>(jars.size());
+        jars.forEach(jar -> tasks.add(new JarTask(scan, jar)));
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return freeze(results);
+    }
+
+    /**
+     * Scans a set of jars, each through its own isolated {@link ModuleClassLoader} parented by the registry's loader
+     * Every jar's class entries are listed in parallel first, jars are then ordered by path and a class
+     * present in several jars is owned by the first of them. Later jars shadow the class,
+     * their loader delegates it to the owner's loader and never defines a copy.
+     * Finally every jar is loaded in parallel, shadowed classes are left out of its results.
+     *
+     * @param jars     jar files
+     * @param registry registry pooling the jar loaders
+     * @param filter   pre-scan filter, null loads every class
+     * @param cache    scan cache for the filter, may be null
+     * @return classes mapped by package name
+     * @since 1.0.0
+     */
+    public Map<String, LoadedClasses> scanJarsIsolated(List<File> jars, ClassLoaderRegistry registry, ScanFilter filter,
+                                                       ScanCache cache) {
+        List<File> sorted = new ArrayList<>(jars);
+        sorted.sort(Comparator.comparing(File::getAbsolutePath));
+        // every jar is mapped once, listed, handed to its scan task and unmapped when the scan is done
+        MappedJar[] mapped = new MappedJar[sorted.size()];
+        List<ForkJoinTask<List<String>>> listings = new ArrayList<>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            int index = i;
+            File jar = sorted.get(i);
+            listings.add(ForkJoinTask.adapt(() -> {
+                try {
+                    mapped[index] = MappedJar.open(jar);
+                    return ClassEnumerator.listClassEntries(mapped[index]);
+                } catch (IOException e) {
+                    logger.log(Level.FINE, "Failed to map " + jar + ", falling back to JarFile", e);
+                }
+                try {
+                    return ClassEnumerator.listClassEntries(jar);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to list " + jar, e);
+                    return Collections.<String>emptyList();
+                }
+            }));
+        }
+        try {
+            return this.scanIsolated(sorted, mapped, listings, registry, filter, cache);
+        } finally {
+            for (MappedJar jar : mapped) {
+                if (jar != null) {
+                    jar.close();
+                }
+            }
+        }
+    }
+
+    private Map<String, LoadedClasses> scanIsolated(List<File> sorted, MappedJar[] mapped,
+                                                    List<ForkJoinTask<List<String>>> listings,
+                                                    ClassLoaderRegistry registry, ScanFilter filter, ScanCache cache) {
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(listings);
+            }
+        });
+
+        List<URLClassLoader> loaders = new ArrayList<>(sorted.size());
+        for (File jar : sorted) {
+            try {
+                loaders.add(registry.acquire(jar, (url, parent) -> new ModuleClassLoader(new URL[]{url}, parent)));
+            } catch (MalformedURLException e) {
+                logger.log(Level.WARNING, "Failed to create ClassLoader", e);
+                loaders.add(null);
+            }
+        }
+        Map<String, Integer> owners = new HashMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            URLClassLoader loader = loaders.get(i);
+            if (loader == null) {
+                continue;
+            }
+            int shadowed = 0;
+            for (String entry : listings.get(i).join()) {
+                String className = entry.substring(0, entry.length() - ".class".length()).replace('/', '.');
+                Integer owner = owners.putIfAbsent(className, i);
+                if (owner == null) {
+                    continue;
+                }
+                shadowed++;
+                if (loader instanceof ModuleClassLoader) {
+                    ((ModuleClassLoader) loader).shadow(className, loaders.get(owner));
+                }
+                logger.log(Level.FINE, className + " in " + sorted.get(i) + " is shadowed by " + sorted.get(owner));
+            }
+            if (shadowed > 0) {
+                logger.log(Level.WARNING, sorted.get(i) + " duplicates " + shadowed + " classes of earlier jars"
+                        + (loader instanceof ModuleClassLoader ? ", using the earlier definitions"
+                        : ", its pooled loader isn't isolated and may define them again"));
+            }
+        }
+
+        ConcurrentMap<String, LoadedClasses.Builder> results = new ConcurrentHashMap<>();
+        Scan scan = new Scan(null, registry, true, filter, cache, results, null);
+        List<IsolatedJarTask> tasks = new ArrayList<>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            if (loaders.get(i) != null) {
+                tasks.add(new IsolatedJarTask(scan, sorted.get(i), mapped[i], loaders.get(i)));
+            }
+        }
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return freeze(results);
+    }
+
+    /**
+     * @return configured parallelism of the pool
+     */
+    public int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Stops the pool once running scans complete
+     */
+    @Override
+    public void close() {
+        if (this == defaultScanner) {
+            return;
+        }
+        this.pool.shutdown();
+    }
+
+    /**
+     * Freezes the aggregated builders once every task is done
+     *
+     * @param results aggregated results
+     * @return read-only snapshots mapped by package name
+     */
+    private static Map<String, LoadedClasses> freeze(Map<String, LoadedClasses.Builder> results) {
+        Map<String, LoadedClasses> frozen = new HashMap<>(results.size() * 2);
+        results.forEach((pkg, builder) -> frozen.put(pkg, builder.build()));
+        return frozen;
+    }
+
+    /**
+     * Adds classes to the aggregated results, grouped by package
+     *
+     * @param scan    scan to add to
+     * @param classes classes to add
+     */
+    private static void merge(Scan scan, LoadedClasses classes) {
+        if (classes == null) {
+            return;
+        }
+        classes.forEach(e -> scan.add(ClassEnumerator.packageName(e.getValue()), classes.getClassLoader(), e.getValue()));
+    }
+
+    /**
+     * Queued in place of END_OF_SCAN when the background scan failed
+     */
+    private static final class ScanFailure {
+
+        private final Throwable cause;
+
+        private ScanFailure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Parameters shared by every task of one scan
+     */
+    private static final class Scan {
+
+        private final ClassLoader classLoader;
+        private final ClassLoaderRegistry registry;
+        private final boolean jarOnly;
+        private final ScanFilter filter;
+        private final ScanCache cache;
+        private final ConcurrentMap<String, LoadedClasses.Builder> results;
+        private final Consumer<Class<?>> sink;
+        /**
+         * resolves super types of loose class files, shared so each header is read once per scan
+         */
+        private final ScanFilter.HierarchyResolver resolver;
+
+        Scan(ClassLoader classLoader, ClassLoaderRegistry registry, boolean jarOnly, ScanFilter filter, ScanCache cache,
+             ConcurrentMap<String, LoadedClasses.Builder> results, Consumer<Class<?>> sink) {
+            this.classLoader = classLoader;
+            this.registry = registry;
+            this.jarOnly = jarOnly;
+            this.filter = filter;
+            this.cache = cache;
+            this.results = results;
+            this.sink = sink;
+            this.resolver = filter == null || jarOnly ? null
+                    : new ScanFilter.HierarchyResolver(Collections.emptyMap(), classLoader);
+        }
+
+        void add(String packageName, ClassLoader loader, Class<?> clazz) {
+            if (this.results != null) {
+                this.results.computeIfAbsent(packageName, p -> new LoadedClasses.Builder(loader)).addClass(clazz);
+            }
+            if (this.sink != null) {
+                this.sink.accept(clazz);
+            }
+        }
+    }
+
+    private static final class DirectoryTask extends RecursiveAction {
+
+        private final Scan scan;
+        private final File directory;
+        private final String prepend;
+
+        DirectoryTask(Scan scan, File directory, String prepend) {
+            this.scan = scan;
+            this.directory = directory;
+            this.prepend = prepend;
+        }
+
+        @Override
+        protected void compute() {
+            String[] files = this.directory.list();
+            if (files == null) {
+                return;
+            }
+            String packageName = this.prepend.replace("/", ".");
+            if (packageName.startsWith(".")) {
+                packageName = packageName.substring(1);
+            }
+            List<RecursiveAction> subTasks = new ArrayList<>();
+            for (String fileName : files) {
+                File file = new File(this.directory, fileName);
+                if (!this.scan.jarOnly && fileName.endsWith(".class")) {
+                    if (this.scan.filter != null
+                            && !ClassEnumerator.prescanClassFile(file, this.scan.resolver, this.scan.filter)) {
+                        continue;
+                    }
+                    Class<?> clazz = ClassEnumerator.loadClass(String.format("%s.%s", this.prepend, fileName),
+                            this.scan.classLoader);
+                    if (clazz != null) {
+                        this.scan.add(packageName, this.scan.classLoader, clazz);
+                    }
+                } else if (file.isDirectory()) {
+                    subTasks.add(new DirectoryTask(this.scan, file, String.format("%s.%s", this.prepend, fileName)));
+                } else if (fileName.toLowerCase().trim().endsWith(".jar")) {
+                    subTasks.add(new JarTask(this.scan, file));
+                }
+            }
+            invokeAll(subTasks);
+        }
+    }
+
+    private static final class JarTask extends RecursiveAction {
+
+        private final Scan scan;
+        private final File jar;
+
+        JarTask(Scan scan, File jar) {
+            this.scan = scan;
+            this.jar = jar;
+        }
+
+        @Override
+        protected void compute() {
+            ClassLoader classLoader;
+            try {
+                classLoader = this.scan.registry.acquire(this.jar);
+            } catch (MalformedURLException e) {
+                logger.log(Level.WARNING, "Failed to create ClassLoader", e);
+                return;
+            }
+            merge(this.scan, ClassEnumerator.loadClassesFromJarUnformatted(this.jar, classLoader, this.scan.filter,
+                    this.scan.cache));
+        }
+    }
+
+    private static final class IsolatedJarTask extends RecursiveAction {
+
+        private final Scan scan;
+        private final File jar;
+        private final MappedJar mapped;
+        private final ClassLoader classLoader;
+
+        IsolatedJarTask(Scan scan, File jar, MappedJar mapped, ClassLoader classLoader) {
+            this.scan = scan;
+            this.jar = jar;
+            this.mapped = mapped;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected void compute() {
+            LoadedClasses classes = ClassEnumerator.loadClassesFromJarUnformatted(this.jar, this.mapped,
+                    this.classLoader, this.scan.filter, this.scan.cache);
+            classes.forEach(e -> {
+                if (e.getValue().getClassLoader() == this.classLoader) {
+                    this.scan.add(ClassEnumerator.packageName(e.getValue()), this.classLoader, e.getValue());
+                }
+            });
+        }
+    }
+}
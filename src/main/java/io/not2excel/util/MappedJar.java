@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only jar reader backed by a memory mapping of the whole file.
+ * The ZIP central directory is parsed directly, listing entries costs no inflater or per entry stream.
+ * Stored entries are exposed as slices of the mapping without copying,
+ * deflated entries are inflated into a buffer reused by the calling thread.
+ * <p/>
+ * Jars larger than 2GB can't be mapped in one piece and are rejected with an IOException.
+ * <p/>
+ * The mapping holds the file open until {@link #close()} unmaps it, on Windows it also locks the jar against
+ * replacement. Slices returned by {@link #rawSlice(Entry)} and {@link #contents(Entry)} must not be used after close.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class MappedJar implements Closeable {
+
+    private static final Logger logger = Logger.getLogger("MappedJar");
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int END_OF_CENTRAL_SIZE = 22;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[][]> BUFFERS = ThreadLocal.withInitial(() -> new byte[][]{new byte[8192], new byte[16384]});
+
+    private final File file;
+    private final MappedByteBuffer mapping;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entryMap;
+    private volatile boolean closed;
+
+    private MappedJar(File file, MappedByteBuffer mapping, List<Entry> entries) {
+        this.file = file;
+        this.mapping = mapping;
+        this.entries = Collections.unmodifiableList(entries);
+        this.entryMap = new HashMap<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            this.entryMap.putIfAbsent(entry.name, entry);
+        }
+    }
+
+    /**
+     * Maps a jar and reads its central directory
+     * The file handle is released immediately, the mapping stays valid until {@link #close()} or garbage collection
+     *
+     * @param file jar file
+     * @return mapped jar
+     * @throws IOException if the jar can't be mapped or isn't a valid zip
+     * @since 1.0.0
+     */
+    public static MappedJar open(File file) throws IOException {
+        MappedByteBuffer mapping;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Jar too large to map: " + file);
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return new MappedJar(file, mapping, readCentralDirectory(mapping));
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | IOException e) {
+            unmap(mapping);
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new IOException("Malformed zip file " + file, e);
+        }
+    }
+
+    /**
+     * Unmaps the jar right away instead of waiting for garbage collection, further reads fail with an IOException
+     */
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            unmap(this.mapping);
+        }
+    }
+
+    /**
+     * Releases a mapping through the JDK's cleaner, Unsafe.invokeCleaner from Java 9 on, DirectBuffer.cleaner() before.
+     * If neither is accessible the mapping is left to the garbage collector
+     */
+    private static void unmap(MappedByteBuffer mapping) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(mapping);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), mapping);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.FINE, "Failed to unmap, left to the garbage collector", e);
+        }
+    }
+
+    private static List<Entry> readCentralDirectory(ByteBuffer buffer) throws IOException {
+        int end = findEndOfCentral(buffer);
+        long count = buffer.getShort(end + 10) & 0xFFFF;
+        long offset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            int locator = end - 20;
+            if (locator < 0 || buffer.getInt(locator) != ZIP64_LOCATOR) {
+                throw new IOException("Missing zip64 end of central directory locator");
+            }
+            int zip64End = (int) buffer.getLong(locator + 8);
+            if (buffer.getInt(zip64End) != ZIP64_END_OF_CENTRAL) {
+                throw new IOException("Missing zip64 end of central directory");
+            }
+            count = buffer.getLong(zip64End + 32);
+            offset = buffer.getLong(zip64End + 48);
+        }
+        List<Entry> entries = new ArrayList<>((int) Math.min(count, 1 << 16));
+        int position = (int) offset;
+        for (long i = 0; i < count; i++) {
+            if (buffer.getInt(position) != CENTRAL_HEADER) {
+                throw new IOException("Bad central directory header at " + position);
+            }
+            int method = buffer.getShort(position + 10) & 0xFFFF;
+            long compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            long localOffset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+            String name = decodeName(buffer, position + 46, nameLength);
+            if (size == 0xFFFFFFFFL || compressedSize == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+                int extra = position + 46 + nameLength;
+                int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    int id = buffer.getShort(extra) & 0xFFFF;
+                    int length = buffer.getShort(extra + 2) & 0xFFFF;
+                    if (id == 0x0001) {
+                        int field = extra + 4;
+                        if (size == 0xFFFFFFFFL) {
+                            size = buffer.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == 0xFFFFFFFFL) {
+                            compressedSize = buffer.getLong(field);
+                            field += 8;
+                        }
+                        if (localOffset == 0xFFFFFFFFL) {
+                            localOffset = buffer.getLong(field);
+                        }
+                        break;
+                    }
+                    extra += 4 + length;
+                }
+            }
+            entries.add(new Entry(name, method, toInt(compressedSize), toInt(size), toInt(localOffset)));
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * @return the value, or -1 if it can't point into a mapping, rejected by {@link #rawSlice(Entry)}
+     */
+    private static int toInt(long value) {
+        return value < 0 || value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    private static int findEndOfCentral(ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        int stop = Math.max(0, limit - END_OF_CENTRAL_SIZE - 0xFFFF);
+        for (int i = limit - END_OF_CENTRAL_SIZE; i >= stop; i--) {
+            if (buffer.getInt(i) == END_OF_CENTRAL) {
+                return i;
+            }
+        }
+        throw new IOException("End of central directory not found");
+    }
+
+    private static String decodeName(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return all entries in central directory order
+     */
+    public List<Entry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * @param name entry name
+     * @return entry, or null if absent
+     */
+    public Entry getEntry(String name) {
+        return this.entryMap.get(name);
+    }
+
+    /**
+     * Returns the raw, possibly compressed, data of an entry as a slice of the mapping
+     *
+     * @param entry entry of this jar
+     * @return read-only slice, never copied
+     * @throws IOException if the local header is invalid or the jar is closed
+     * @since 1.0.0
+     */
+    public ByteBuffer rawSlice(Entry entry) throws IOException {
+        if (this.closed) {
+            throw new IOException("Closed " + this.file);
+        }
+        ByteBuffer view = this.mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        // offsets and sizes come from the central directory, a corrupt jar may point anywhere
+        long capacity = view.capacity();
+        if (entry.localOffset < 0 || entry.localOffset + 30L > capacity
+                || view.getInt(entry.localOffset) != LOCAL_HEADER) {
+            throw new IOException("Bad local header for " + entry.name + " in " + this.file);
+        }
+        int nameLength = view.getShort(entry.localOffset + 26) & 0xFFFF;
+        int extraLength = view.getShort(entry.localOffset + 28) & 0xFFFF;
+        long start = entry.localOffset + 30L + nameLength + extraLength;
+        if (entry.compressedSize < 0 || entry.size < 0 || start + entry.compressedSize > capacity) {
+            throw new IOException("Entry " + entry.name + " exceeds " + this.file);
+        }
+        view.limit((int) (start + entry.compressedSize));
+        view.position((int) start);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the uncompressed contents of an entry
+     * Stored entries are a zero copy slice of the mapping, valid as long as this jar is referenced.
+     * Deflated entries are inflated into a buffer owned by the calling thread,
+     * the returned buffer is only valid until the same thread reads another deflated entry.
+     *
+     * @param entry entry of this jar
+     * @return read-only contents, big endian
+     * @throws IOException if the entry can't be decoded
+     * @since 1.0.0
+     */
+    public ByteBuffer contents(Entry entry) throws IOException {
+        ByteBuffer raw = this.rawSlice(entry);
+        if (entry.method == METHOD_STORED) {
+            return raw;
+        }
+        if (entry.method != METHOD_DEFLATED) {
+            throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+        byte[][] buffers = BUFFERS.get();
+        if (buffers[0].length < entry.compressedSize) {
+            buffers[0] = new byte[Math.max(entry.compressedSize, buffers[0].length * 2)];
+        }
+        if (buffers[1].length < entry.size) {
+            buffers[1] = new byte[Math.max(entry.size, buffers[1].length * 2)];
+        }
+        raw.get(buffers[0], 0, entry.compressedSize);
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(buffers[0], 0, entry.compressedSize);
+        try {
+            int inflated = 0;
+            while (inflated < entry.size && !inflater.finished()) {
+                int read = inflater.inflate(buffers[1], inflated, entry.size - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += read;
+            }
+            if (inflated != entry.size) {
+                throw new IOException("Truncated entry " + entry.name + " in " + this.file);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry " + entry.name + " in " + this.file, e);
+        }
+        return ByteBuffer.wrap(buffers[1], 0, entry.size).slice().asReadOnlyBuffer();
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Central directory record of a single entry
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final int method;
+        private final int compressedSize;
+        private final int size;
+        private final int localOffset;
+
+        Entry(String name, int method, int compressedSize, int size, int localOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localOffset = localOffset;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public boolean isDirectory() {
+            return this.name.endsWith("/");
+        }
+
+        /**
+         * @return true for class files, excluding module-info and multi-release duplicates
+         */
+        public boolean isClass() {
+            return this.name.endsWith(".class") && !this.name.endsWith("module-info.class")
+                    && !this.name.startsWith("META-INF/");
+        }
+
+        public boolean isStored() {
+            return this.method == METHOD_STORED;
+        }
+
+        public int getSize() {
+            return this.size;
+        }
+
+        public int getCompressedSize() {
+            return this.compressedSize;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Isolated loader of a single module jar.
+ * Classes the jar shares with a jar that won the duplicate check are shadowed,
+ * requests for them are delegated to the winner's loader so this loader never defines its own copy.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public class ModuleClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final Map<String, ClassLoader> shadowed = new ConcurrentHashMap<>();
+
+    public ModuleClassLoader(URL[] urls, ClassLoader parent) {
+        super(urls, parent);
+    }
+
+    /**
+     * Delegates a class of this jar to the loader of the jar that owns it
+     * Must be called before the class is first requested from this loader
+     *
+     * @param className binary class name
+     * @param owner     loader that defines the class
+     * @since 1.0.0
+     */
+    public void shadow(String className, ClassLoader owner) {
+        this.shadowed.put(className, owner);
+    }
+
+    /**
+     * @param className binary class name
+     * @return true if the class is delegated to another jar's loader
+     */
+    public boolean isShadowed(String className) {
+        return this.shadowed.containsKey(className);
+    }
+
+    /**
+     * @return binary names of every shadowed class
+     */
+    public Set<String> getShadowedNames() {
+        return Collections.unmodifiableSet(this.shadowed.keySet());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        ClassLoader owner = this.shadowed.get(name);
+        if (owner != null) {
+            return owner.loadClass(name);
+        }
+        return super.loadClass(name, resolve);
+    }
+}
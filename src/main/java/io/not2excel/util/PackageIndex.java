@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import io.not2excel.util.ClassEnumerator.LoadedClasses;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only trie over package names, each node holding the classes of exactly that package
+ * Exact package lookups cost one step per package segment, prefix queries additionally
+ * only visit the matching sub tree. Prefixes match whole segments,
+ * "com.shop.modules" covers "com.shop.modules.admin" but not "com.shop.modulesx".
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class PackageIndex {
+
+    private final Node root;
+    private final int packageCount;
+    private final int classCount;
+
+    private PackageIndex(Node root, int packageCount, int classCount) {
+        this.root = root;
+        this.packageCount = packageCount;
+        this.classCount = classCount;
+    }
+
+    /**
+     * Indexes classes already mapped by package name, as returned by {@link ClassEnumerator}
+     *
+     * @param packages pkgName -> relative LoadedClasses object
+     * @return package index
+     * @since 1.0.0
+     */
+    public static PackageIndex of(Map<String, LoadedClasses> packages) {
+        Node root = new Node("");
+        int classCount = 0;
+        for (Map.Entry<String, LoadedClasses> entry : packages.entrySet()) {
+            root.resolve(entry.getKey(), true).classes = entry.getValue();
+            classCount += entry.getValue().size();
+        }
+        return new PackageIndex(root, packages.size(), classCount);
+    }
+
+    /**
+     * Indexes unformatted LoadedClasses objects, classes are grouped by their own package
+     *
+     * @param loaded LoadedClasses objects, i.e. one per jar
+     * @return package index
+     * @since 1.0.0
+     */
+    public static PackageIndex of(Collection<LoadedClasses> loaded) {
+        Map<String, LoadedClasses.Builder> builders = new HashMap<>();
+        loaded.forEach(classes -> classes.forEach(e -> builders.computeIfAbsent(ClassEnumerator.packageName(e.getValue()),
+                pkg -> new LoadedClasses.Builder(classes.getClassLoader())).addClass(e.getValue())));
+        Map<String, LoadedClasses> packages = new HashMap<>(builders.size() * 2);
+        builders.forEach((pkg, builder) -> packages.put(pkg, builder.build()));
+        return of(packages);
+    }
+
+    /**
+     * @param packageName package name with "." or "/" separators, "" for the default package
+     * @return classes of exactly that package, null if none
+     * @since 1.0.0
+     */
+    public LoadedClasses getPackage(String packageName) {
+        Node node = this.root.resolve(packageName, false);
+        return node == null ? null : node.classes;
+    }
+
+    /**
+     * @param prefix package prefix with "." or "/" separators, "" for everything
+     * @return every package at or below the prefix, pkgName -> relative LoadedClasses object
+     * @since 1.0.0
+     */
+    public Map<String, LoadedClasses> getPackages(String prefix) {
+        Node node = this.root.resolve(prefix, false);
+        if (node == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, LoadedClasses> packages = new HashMap<>();
+        node.collect(packages);
+        return packages;
+    }
+
+    /**
+     * @param prefix package prefix with "." or "/" separators, "" for everything
+     * @return every class at or below the prefix
+     * @since 1.0.0
+     */
+    public List<Class<?>> getClasses(String prefix) {
+        Node node = this.root.resolve(prefix, false);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        node.collectClasses(classes);
+        return classes;
+    }
+
+    /**
+     * @param prefix package prefix with "." or "/" separators
+     * @return true if any package exists at or below the prefix
+     */
+    public boolean containsPrefix(String prefix) {
+        return this.root.resolve(prefix, false) != null;
+    }
+
+    public int getPackageCount() {
+        return this.packageCount;
+    }
+
+    public int getClassCount() {
+        return this.classCount;
+    }
+
+    private static final class Node {
+
+        private final String packageName;
+        private Map<String, Node> children = Collections.emptyMap();
+        private LoadedClasses classes;
+
+        Node(String packageName) {
+            this.packageName = packageName;
+        }
+
+        Node resolve(String packageName, boolean create) {
+            Node node = this;
+            int length = packageName.length();
+            int start = 0;
+            while (start < length) {
+                int end = start;
+                while (end < length && packageName.charAt(end) != '.' && packageName.charAt(end) != '/') {
+                    end++;
+                }
+                if (end > start) {
+                    String segment = packageName.substring(start, end);
+                    Node child = node.children.get(segment);
+                    if (child == null) {
+                        if (!create) {
+                            return null;
+                        }
+                        child = new Node(node.packageName.isEmpty() ? segment : node.packageName + '.' + segment);
+                        if (node.children.isEmpty()) {
+                            node.children = new HashMap<>(4);
+                        }
+                        node.children.put(segment, child);
+                    }
+                    node = child;
+                }
+                start = end + 1;
+            }
+            return node;
+        }
+
+        void collect(Map<String, LoadedClasses> packages) {
+            if (this.classes != null) {
+                packages.put(this.packageName, this.classes);
+            }
+            this.children.values().forEach(child -> child.collect(packages));
+        }
+
+        void collectClasses(List<Class<?>> classes) {
+            if (this.classes != null) {
+                classes.addAll(this.classes.getClasses());
+            }
+            this.children.values().forEach(child -> child.collectClasses(classes));
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent record of which classes of a jar matched a {@link ScanFilter}.
+ * Jars are fingerprinted by path, size, modification time and optionally a CRC32 of their contents,
+ * unchanged jars are served from the cache and never enumerated.
+ * <p/>
+ * The whole cache is discarded when the filter or the module-api version changes.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ScanCache {
+
+    public static final String FILE_SUFFIX = ".scancache";
+
+    private static final Logger logger = Logger.getLogger("ScanCache");
+    private static final int MAGIC = 0x4D415343; // MASC
+    private static final int FORMAT_VERSION = 1;
+
+    private final File file;
+    private final String fingerprint;
+    private final boolean hashContents;
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean dirty;
+
+    private ScanCache(File file, String fingerprint, boolean hashContents) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.hashContents = hashContents;
+    }
+
+    /**
+     * Opens the cache stored next to a module directory, i.e. "modules.scancache" for "modules"
+     *
+     * @param directory module directory
+     * @param filter    filter the cached results were produced with
+     * @return scan cache, empty if none existed or it was invalidated
+     * @since 1.0.0
+     */
+    public static ScanCache forDirectory(File directory, ScanFilter filter) {
+        File absolute = directory.getAbsoluteFile();
+        return open(new File(absolute.getParentFile(), absolute.getName() + FILE_SUFFIX), filter, false);
+    }
+
+    /**
+     * Opens a cache file
+     *
+     * @param file         cache file, doesn't need to exist
+     * @param filter       filter the cached results were produced with
+     * @param hashContents also compare a CRC32 of the jar contents, catches rewrites that preserve size and mtime
+     * @return scan cache, empty if none existed or it was invalidated
+     * @since 1.0.0
+     */
+    public static ScanCache open(File file, ScanFilter filter, boolean hashContents) {
+        ScanCache cache = new ScanCache(file, fingerprint(filter), hashContents);
+        if (file.isFile()) {
+            try {
+                cache.read();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Discarding unreadable scan cache " + file, e);
+                cache.records.clear();
+                cache.dirty = true;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Builds the key that invalidates the cache, made of the filter and the module-api version
+     *
+     * @param filter scan filter
+     * @return fingerprint
+     */
+    private static String fingerprint(ScanFilter filter) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(FORMAT_VERSION).append('|');
+        builder.append(ClassEnumerator.getApiVersion()).append('|');
+        if (filter.getAssignableFrom() != null) {
+            builder.append(filter.getAssignableFrom().getName());
+        }
+        builder.append('|');
+        if (filter.getAnnotation() != null) {
+            builder.append(filter.getAnnotation().getName());
+            List<String> members = new ArrayList<>();
+            for (Method method : filter.getAnnotation().getDeclaredMethods()) {
+                members.add(method.getName() + ':' + method.getReturnType().getName());
+            }
+            Collections.sort(members);
+            builder.append(members);
+        }
+        builder.append('|');
+        if (filter.getIndexResource() != null) {
+            builder.append(filter.getIndexResource());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the cached matches of a jar if it hasn't changed since it was stored
+     *
+     * @param jar jar file
+     * @return matched binary class names, or null on a cache miss
+     * @since 1.0.0
+     */
+    public List<String> lookup(File jar) {
+        Record record = this.records.get(key(jar));
+        if (record == null || record.size != jar.length() || record.lastModified != jar.lastModified()
+                || (this.hashContents && record.hash != hash(jar))) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return record.classNames;
+    }
+
+    /**
+     * Records the matches of a freshly scanned jar
+     *
+     * @param jar        jar file
+     * @param classNames matched binary class names
+     * @since 1.0.0
+     */
+    public void store(File jar, Collection<String> classNames) {
+        long hash = this.hashContents ? hash(jar) : 0L;
+        this.records.put(key(jar), new Record(jar.length(), jar.lastModified(), hash,
+                Collections.unmodifiableList(new ArrayList<>(classNames))));
+        this.dirty = true;
+    }
+
+    /**
+     * Writes the cache if anything changed, records of jars that no longer exist are dropped
+     * The file is replaced atomically where the platform allows it
+     *
+     * @throws IOException if the cache can't be written
+     * @since 1.0.0
+     */
+    public void save() throws IOException {
+        this.records.keySet().removeIf(path -> {
+            boolean missing = !new File(path).isFile();
+            this.dirty |= missing;
+            return missing;
+        });
+        if (!this.dirty) {
+            return;
+        }
+        File temp = new File(this.file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(this.fingerprint);
+            out.writeBoolean(this.hashContents);
+            out.writeInt(this.records.size());
+            for (Map.Entry<String, Record> entry : this.records.entrySet()) {
+                Record record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.size);
+                out.writeLong(record.lastModified);
+                out.writeLong(record.hash);
+                out.writeInt(record.classNames.size());
+                for (String className : record.classNames) {
+                    out.writeUTF(className);
+                }
+            }
+        }
+        if (!temp.renameTo(this.file)) {
+            if (!this.file.delete() || !temp.renameTo(this.file)) {
+                throw new IOException("Failed to replace scan cache " + this.file);
+            }
+        }
+        this.dirty = false;
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a scan cache");
+            }
+            if (!this.fingerprint.equals(in.readUTF()) || in.readBoolean() != this.hashContents) {
+                logger.log(Level.INFO, "Scan cache " + this.file + " invalidated by filter or version change");
+                this.dirty = true;
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                long hash = in.readLong();
+                String[] classNames = new String[in.readInt()];
+                for (int c = 0; c < classNames.length; c++) {
+                    classNames[c] = in.readUTF();
+                }
+                this.records.put(path, new Record(size, lastModified, hash,
+                        Collections.unmodifiableList(Arrays.asList(classNames))));
+            }
+        }
+    }
+
+    private static String key(File jar) {
+        try {
+            return jar.getCanonicalPath();
+        } catch (IOException e) {
+            return jar.getAbsolutePath();
+        }
+    }
+
+    private static long hash(File jar) {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(jar)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return -1L;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return lookups served from the cache
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return lookups that required a scan
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return number of cached jars
+     */
+    public int size() {
+        return this.records.size();
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanCache[" + this.file + ", jars=" + this.size() + ", hits=" + this.getHits()
+                + ", misses=" + this.getMisses() + "]";
+    }
+
+    private static final class Record {
+
+        private final long size;
+        private final long lastModified;
+        private final long hash;
+        private final List<String> classNames;
+
+        Record(long size, long lastModified, long hash, List<String> classNames) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.classNames = classNames;
+        }
+    }
+}
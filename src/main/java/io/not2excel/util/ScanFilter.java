@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Describes which classes a scan is interested in, evaluated against {@link ClassHeader}s
+ * so that only matching classes are ever handed to a ClassLoader
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class ScanFilter {
+
+    private static final Logger logger = Logger.getLogger("ScanFilter");
+
+    private final Class<?> assignableFrom;
+    private final Class<? extends Annotation> annotation;
+    private final String assignableName;
+    private final String annotationName;
+    private final boolean inheritedAnnotation;
+    private final String indexResource;
+    private final IndexReader indexReader;
+
+    private ScanFilter(Class<?> assignableFrom, Class<? extends Annotation> annotation) {
+        this(assignableFrom, annotation, null, null);
+    }
+
+    private ScanFilter(Class<?> assignableFrom, Class<? extends Annotation> annotation,
+                       String indexResource, IndexReader indexReader) {
+        this.assignableFrom = assignableFrom;
+        this.annotation = annotation;
+        this.indexResource = indexResource;
+        this.indexReader = indexReader;
+        this.assignableName = assignableFrom == null ? null : ClassHeader.internalName(assignableFrom);
+        this.annotationName = annotation == null ? null : ClassHeader.internalName(annotation);
+        this.inheritedAnnotation = annotation != null && annotation.isAnnotationPresent(Inherited.class);
+    }
+
+    /**
+     * Creates a filter matching concrete classes assignable to the given type and carrying the given annotation
+     *
+     * @param assignableFrom class that should be assignable from matched classes, may be null
+     * @param annotation     runtime annotation matched classes must carry, may be null
+     * @return scan filter
+     * @since 1.0.0
+     */
+    public static ScanFilter of(Class<?> assignableFrom, Class<? extends Annotation> annotation) {
+        return new ScanFilter(assignableFrom, annotation);
+    }
+
+    /**
+     * @param assignableFrom class that should be assignable from matched classes
+     * @return scan filter
+     * @since 1.0.0
+     */
+    public static ScanFilter assignableFrom(Class<?> assignableFrom) {
+        return new ScanFilter(assignableFrom, null);
+    }
+
+    /**
+     * @param annotation runtime annotation matched classes must carry
+     * @return scan filter
+     * @since 1.0.0
+     */
+    public static ScanFilter annotatedWith(Class<? extends Annotation> annotation) {
+        return new ScanFilter(null, annotation);
+    }
+
+    /**
+     * Returns a copy of this filter that trusts a prebuilt index inside jars instead of enumerating them
+     * Jars carrying the index resource only have the listed classes loaded, the rest are pre-scanned as usual
+     *
+     * @param resource jar entry name of the index
+     * @param reader   reads the listed class names from the index
+     * @return scan filter
+     * @since 1.0.0
+     */
+    public ScanFilter withIndex(String resource, IndexReader reader) {
+        return new ScanFilter(this.assignableFrom, this.annotation, resource, reader);
+    }
+
+    /**
+     * Checks a class header against this filter without loading it
+     * Abstract classes and interfaces never match when filtering by assignable type, they can't be instantiated
+     *
+     * @param header   header of the candidate class
+     * @param resolver resolver used to walk the super types of the candidate
+     * @return true if the class should be loaded
+     * @since 1.0.0
+     */
+    public boolean matches(ClassHeader header, HierarchyResolver resolver) {
+        if (header.isAnnotation()) {
+            return false;
+        }
+        if (this.annotationName != null && !header.hasAnnotation(this.annotationName)) {
+            if (!this.inheritedAnnotation || !resolver.inheritsAnnotation(header, this.annotationName)) {
+                return false;
+            }
+        }
+        if (this.assignableName != null) {
+            if (header.isAbstract()) {
+                return false;
+            }
+            return resolver.isAssignable(header, this.assignableName);
+        }
+        return true;
+    }
+
+    /**
+     * Verifies an already loaded class against this filter
+     *
+     * @param clazz loaded class
+     * @return true if matched
+     * @since 1.0.0
+     */
+    public boolean matches(Class<?> clazz) {
+        if (this.annotation != null && !clazz.isAnnotationPresent(this.annotation)) {
+            return false;
+        }
+        return this.assignableFrom == null || this.assignableFrom.isAssignableFrom(clazz);
+    }
+
+    public Class<?> getAssignableFrom() {
+        return this.assignableFrom;
+    }
+
+    public Class<? extends Annotation> getAnnotation() {
+        return this.annotation;
+    }
+
+    public String getIndexResource() {
+        return this.indexResource;
+    }
+
+    public IndexReader getIndexReader() {
+        return this.indexReader;
+    }
+
+    /**
+     * Reads the binary class names listed by a prebuilt index
+     *
+     * @since 1.0.0
+     */
+    @FunctionalInterface
+    public interface IndexReader {
+
+        List<String> read(InputStream in) throws IOException;
+    }
+
+    /**
+     * Walks class hierarchies from headers, first from the headers known to the current scan
+     * and otherwise by reading the class file resource through the given ClassLoader.
+     * Resource lookups never define the class.
+     *
+     * @author not2excel
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    public static final class HierarchyResolver {
+
+        private final Map<String, ClassHeader> known;
+        private final ClassLoader classLoader;
+        private final Map<String, ClassHeader> resolved = new ConcurrentHashMap<>();
+        private final Map<String, Boolean> assignable = new ConcurrentHashMap<>();
+
+        /**
+         * @param known       headers already read by the scan, keyed by internal name
+         * @param classLoader loader used to find the class files of unknown super types
+         */
+        public HierarchyResolver(Map<String, ClassHeader> known, ClassLoader classLoader) {
+            this.known = known;
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * @param header     header to start from
+         * @param targetName internal name of the type to check for
+         * @return true if the header's class is, extends or implements the target
+         */
+        public boolean isAssignable(ClassHeader header, String targetName) {
+            if (header.getName().equals(targetName)) {
+                return true;
+            }
+            if (this.isAssignable(header.getSuperName(), targetName)) {
+                return true;
+            }
+            for (String iface : header.getInterfaces()) {
+                if (this.isAssignable(iface, targetName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param header         header to start from
+         * @param annotationName internal name of an {@link Inherited} annotation
+         * @return true if any super class carries the annotation
+         */
+        public boolean inheritsAnnotation(ClassHeader header, String annotationName) {
+            String superName = header.getSuperName();
+            while (superName != null) {
+                ClassHeader superHeader = this.lookup(superName);
+                if (superHeader == null) {
+                    return false;
+                }
+                if (superHeader.hasAnnotation(annotationName)) {
+                    return true;
+                }
+                superName = superHeader.getSuperName();
+            }
+            return false;
+        }
+
+        private boolean isAssignable(String name, String targetName) {
+            if (name == null) {
+                return false;
+            }
+            if (name.equals(targetName)) {
+                return true;
+            }
+            if (name.startsWith("java/") && !targetName.startsWith("java/")) {
+                return false;
+            }
+            String key = targetName + '>' + name;
+            Boolean cached = this.assignable.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            ClassHeader header = this.lookup(name);
+            boolean result = header != null && this.isAssignable(header, targetName);
+            this.assignable.put(key, result);
+            return result;
+        }
+
+        /**
+         * Resolves a header by internal name
+         *
+         * @param name internal name
+         * @return header, or null if it couldn't be found or read
+         */
+        public ClassHeader lookup(String name) {
+            ClassHeader header = this.known.get(name);
+            if (header != null) {
+                return header;
+            }
+            header = this.resolved.get(name);
+            if (header != null || this.classLoader == null) {
+                return header;
+            }
+            try (InputStream in = this.classLoader.getResourceAsStream(name + ".class")) {
+                if (in == null) {
+                    return null;
+                }
+                header = ClassHeader.parse(in);
+                this.resolved.put(name, header);
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Failed to read class header of " + name, e);
+            }
+            return header;
+        }
+    }
+}
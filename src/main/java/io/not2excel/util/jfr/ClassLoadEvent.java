@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A class loaded, or failed to load, while scanning
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Name("io.not2excel.module.ClassLoad")
+@Label("Scanned Class Load")
+@Category({"Module API", "Scanning"})
+@Description("A class found while scanning was loaded, without initializing it")
+@StackTrace(false)
+final class ClassLoadEvent extends jdk.jfr.Event {
+
+    @Label("Class Name")
+    String className;
+
+    @Label("Loaded Class")
+    @Description("Null if loading failed")
+    Class<?> loadedClass;
+
+    @Label("Error")
+    @Description("Why loading failed, null if it succeeded")
+    String error;
+}
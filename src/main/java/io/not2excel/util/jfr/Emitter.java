@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * The only class touching jdk.jfr besides the events, loaded by {@link FlightEvents} once JFR is known to exist.
+ * An event is only allocated past its enabled check while a recording wants it.
+ */
+final class Emitter {
+
+    private Emitter() {
+    }
+
+    static boolean isAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    static Object beginJarScan() {
+        JarScanEvent event = new JarScanEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitJarScan(Object handle, String path, long entries, long loaded, long bytes, boolean cached) {
+        JarScanEvent event = (JarScanEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.entries = entries;
+            event.loaded = loaded;
+            event.bytes = bytes;
+            event.cached = cached;
+            event.commit();
+        }
+    }
+
+    static Object beginClassLoad() {
+        ClassLoadEvent event = new ClassLoadEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitClassLoad(Object handle, String className, Class<?> loadedClass, String error) {
+        ClassLoadEvent event = (ClassLoadEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.className = className;
+            event.loadedClass = loadedClass;
+            event.error = error;
+            event.commit();
+        }
+    }
+
+    static Object beginInstantiation() {
+        ModuleInstantiationEvent event = new ModuleInstantiationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitInstantiation(Object handle, String moduleId, Class<?> moduleClass, boolean failed) {
+        ModuleInstantiationEvent event = (ModuleInstantiationEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.moduleId = moduleId;
+            event.moduleClass = moduleClass;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    static Object beginLifecycle() {
+        ModuleLifecycleEvent event = new ModuleLifecycleEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void commitLifecycle(Object handle, String moduleId, String phase, Class<?> moduleClass, boolean failed) {
+        ModuleLifecycleEvent event = (ModuleLifecycleEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.moduleId = moduleId;
+            event.phase = phase;
+            event.moduleClass = moduleClass;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+}
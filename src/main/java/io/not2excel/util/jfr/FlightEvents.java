@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util.jfr;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Java Flight Recorder events of scanning and the module lifecycle, named "io.not2excel.module.*".
+ * A begin method returns an event handle, or null while no recording enables the event,
+ * the matching commit method ends it and records it if it passed the recording's threshold. Commit ignores null handles.
+ * <p/>
+ * JFR's event API exists from 8u262 on, on older runtimes or with "-Dmoduleapi.jfr=false" every begin returns null
+ * and the event classes are never loaded.
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+public final class FlightEvents {
+
+    private static final Logger logger = Logger.getLogger("FlightEvents");
+    private static final boolean AVAILABLE = detect();
+
+    private FlightEvents() {
+    }
+
+    private static boolean detect() {
+        if (!Boolean.parseBoolean(System.getProperty("moduleapi.jfr", "true"))) {
+            return false;
+        }
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightEvents.class.getClassLoader());
+            return Emitter.isAvailable();
+        } catch (ClassNotFoundException | LinkageError e) {
+            logger.log(Level.FINE, "Flight recorder events unavailable", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return true if events can be recorded in this JVM
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static Object beginJarScan() {
+        return AVAILABLE ? Emitter.beginJarScan() : null;
+    }
+
+    /**
+     * @param event   handle of {@link #beginJarScan()}
+     * @param path    jar path
+     * @param entries class entries considered
+     * @param loaded  classes loaded
+     * @param bytes   jar size
+     * @param cached  class names came from the scan cache
+     */
+    public static void commitJarScan(Object event, String path, long entries, long loaded, long bytes, boolean cached) {
+        if (event != null) {
+            Emitter.commitJarScan(event, path, entries, loaded, bytes, cached);
+        }
+    }
+
+    public static Object beginClassLoad() {
+        return AVAILABLE ? Emitter.beginClassLoad() : null;
+    }
+
+    /**
+     * @param event       handle of {@link #beginClassLoad()}
+     * @param className   binary class name
+     * @param loadedClass loaded class, null if loading failed
+     * @param error       failure, null if loaded
+     */
+    public static void commitClassLoad(Object event, String className, Class<?> loadedClass, String error) {
+        if (event != null) {
+            Emitter.commitClassLoad(event, className, loadedClass, error);
+        }
+    }
+
+    public static Object beginInstantiation() {
+        return AVAILABLE ? Emitter.beginInstantiation() : null;
+    }
+
+    /**
+     * @param event       handle of {@link #beginInstantiation()}
+     * @param moduleId    module id
+     * @param moduleClass module class
+     * @param failed      true if no instance was created
+     */
+    public static void commitInstantiation(Object event, String moduleId, Class<?> moduleClass, boolean failed) {
+        if (event != null) {
+            Emitter.commitInstantiation(event, moduleId, moduleClass, failed);
+        }
+    }
+
+    public static Object beginLifecycle() {
+        return AVAILABLE ? Emitter.beginLifecycle() : null;
+    }
+
+    /**
+     * @param event       handle of {@link #beginLifecycle()}
+     * @param moduleId    module id
+     * @param phase       LOAD, ENABLE, DISABLE or UNLOAD
+     * @param moduleClass module class
+     * @param failed      true if the callback threw
+     */
+    public static void commitLifecycle(Object event, String moduleId, String phase, Class<?> moduleClass, boolean failed) {
+        if (event != null) {
+            Emitter.commitLifecycle(event, moduleId, phase, moduleClass, failed);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A jar scanned for classes, its duration includes loading the matched classes
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Name("io.not2excel.module.JarScan")
+@Label("Jar Scan")
+@Category({"Module API", "Scanning"})
+@Description("A module jar was scanned and its matching classes loaded")
+@StackTrace(false)
+final class JarScanEvent extends jdk.jfr.Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Class Entries")
+    @Description("Class entries considered, the cached or indexed names if the jar wasn't enumerated")
+    long entries;
+
+    @Label("Loaded Classes")
+    long loaded;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Cached")
+    @Description("Class names came from the scan cache")
+    boolean cached;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A module instance created by its coordinator
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Name("io.not2excel.module.ModuleInstantiation")
+@Label("Module Instantiation")
+@Category({"Module API", "Lifecycle"})
+@StackTrace(false)
+final class ModuleInstantiationEvent extends jdk.jfr.Event {
+
+    @Label("Module Id")
+    String moduleId;
+
+    @Label("Module Class")
+    Class<?> moduleClass;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A lifecycle callback of a module, onLoad, onEnable, onDisable or onUnload
+ *
+ * @author not2excel
+ * @version 1.0.0
+ * @since 1.0.0
+ */
+@Name("io.not2excel.module.ModuleLifecycle")
+@Label("Module Lifecycle")
+@Category({"Module API", "Lifecycle"})
+@Description("A module lifecycle callback ran")
+@StackTrace(false)
+final class ModuleLifecycleEvent extends jdk.jfr.Event {
+
+    @Label("Module Id")
+    String moduleId;
+
+    @Label("Phase")
+    @Description("LOAD, ENABLE, DISABLE or UNLOAD")
+    String phase;
+
+    @Label("Module Class")
+    Class<?> moduleClass;
+
+    @Label("Failed")
+    @Description("The callback threw")
+    boolean failed;
+}
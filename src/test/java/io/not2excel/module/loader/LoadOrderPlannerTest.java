@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.module.loader;
+
+import io.not2excel.module.SimpleModuleCoordinator;
+import io.not2excel.module.annotation.ModuleInfo;
+import io.not2excel.module.context.Module;
+import io.not2excel.module.exception.ModuleDependencyException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LoadOrderPlannerTest {
+
+    @Test
+    public void ordersLinearChain() throws ModuleDependencyException {
+        LoadOrderPlanner.Plan<String> plan = plan("d:c", "c:b", "b:a", "a");
+        assertTrue(plan.isComplete());
+        assertEquals(ids("a", "b", "c", "d"), idsOf(plan.orThrow()));
+    }
+
+    @Test
+    public void ordersDiamondByInputOrder() throws ModuleDependencyException {
+        // b and c both only wait on a, they keep their input order
+        LoadOrderPlanner.Plan<String> plan = plan("d:b,c", "c:a", "b:a", "a", "e");
+        assertTrue(plan.isComplete());
+        assertEquals(ids("a", "e", "c", "b", "d"), idsOf(plan.orThrow()));
+    }
+
+    @Test
+    public void keepsIndependentModulesInInputOrder() throws ModuleDependencyException {
+        assertEquals(ids("c", "a", "b"), idsOf(plan("c", "a", "b").orThrow()));
+    }
+
+    @Test
+    public void appendsCyclesInInputOrder() {
+        // e only waits on a, which sits on the cycle, so it can't be ordered either
+        LoadOrderPlanner.Plan<String> plan = plan("e:a", "a:b", "b:a", "c");
+        assertFalse(plan.isComplete());
+        assertEquals(ids("c"), idsOf(plan.getOrder()));
+        assertEquals(ids("e", "a", "b"), idsOf(plan.getUnresolved()));
+        assertEquals(ids("c", "e", "a", "b"), idsOf(plan.getFullOrder()));
+        assertEquals(Collections.singletonList(ids("a", "b", "a")), plan.getCycles());
+        assertTrue(plan.isBackEdge("b:a", "a:b"));
+        assertFalse(plan.isBackEdge("a:b", "b:a"));
+        assertEquals("Circular loadAfter: a -> b -> a", plan.describeProblems());
+        try {
+            plan.orThrow();
+            fail("cyclic plan was accepted");
+        } catch (ModuleDependencyException expected) {
+            // cycle
+        }
+    }
+
+    @Test
+    public void ordersModulesLoadingAfterMissingIds() {
+        // a missing id doesn't hold the module back, it's only reported
+        LoadOrderPlanner.Plan<String> plan = plan("x:ghost", "y", "z:x,gone");
+        assertFalse(plan.isComplete());
+        assertEquals(ids("x", "y", "z"), idsOf(plan.getOrder()));
+        assertTrue(plan.getUnresolved().isEmpty());
+        assertEquals(ids("ghost"), plan.getMissing().get("x"));
+        assertEquals(ids("gone"), plan.getMissing().get("z"));
+        assertEquals("Module x loads after missing ghost; Module z loads after missing gone", plan.describeProblems());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sortsModuleClasses() {
+        ModuleLoader<Module> loader = new SimpleModuleLoader<>(new SimpleModuleCoordinator<>(Module.class));
+        List<Class<Module>> sorted = loader.sortModulesByLoadOrder(Arrays.asList(
+                (Class<Module>) (Class<?>) Top.class, (Class<Module>) (Class<?>) Middle.class,
+                (Class<Module>) (Class<?>) Base.class));
+        assertEquals(Arrays.asList(Base.class, Middle.class, Top.class), sorted);
+    }
+
+    /**
+     * Plans "id:loadAfter,loadAfter" specs, the ordered results are compared by their bare ids
+     */
+    private static LoadOrderPlanner.Plan<String> plan(String... specs) {
+        return LoadOrderPlanner.plan(Arrays.asList(specs), LoadOrderPlannerTest::id, spec -> {
+            int separator = spec.indexOf(':');
+            return separator < 0 ? new String[0] : spec.substring(separator + 1).split(",");
+        });
+    }
+
+    private static String id(String spec) {
+        int separator = spec.indexOf(':');
+        return separator < 0 ? spec : spec.substring(0, separator);
+    }
+
+    private static List<String> ids(String... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static List<String> idsOf(List<String> specs) {
+        return specs.stream().map(LoadOrderPlannerTest::id).collect(Collectors.toList());
+    }
+
+    @ModuleInfo(id = "base", name = "Base")
+    public static class Base implements Module {
+
+        @Override
+        public void onLoad() {
+        }
+
+        @Override
+        public void onUnload() {
+        }
+
+        @Override
+        public void onEnable() {
+        }
+
+        @Override
+        public void onDisable() {
+        }
+    }
+
+    @ModuleInfo(id = "middle", name = "Middle", loadAfter = "base")
+    public static class Middle extends Base {
+    }
+
+    @ModuleInfo(id = "top", name = "Top", loadAfter = {"middle", "base"})
+    public static class Top extends Base {
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2011-Current Richmond Steele (Not2EXceL) (nasm) <not2excel@gmail.com>
+ *
+ * This file is part of module-api.
+ *
+ * module-api can not be copied and/or distributed without the express
+ * permission of the aforementioned owner.
+ */
+package io.not2excel.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedJarTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsStoredEntries() throws IOException {
+        byte[] data = bytes(1000, 1);
+        File file = this.folder.newFile("stored.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            ZipEntry entry = new ZipEntry("a/B.class");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc(data));
+            out.putNextEntry(entry);
+            out.write(data);
+            out.closeEntry();
+        }
+        try (MappedJar jar = MappedJar.open(file)) {
+            MappedJar.Entry entry = jar.getEntry("a/B.class");
+            assertNotNull(entry);
+            assertTrue(entry.isStored());
+            assertTrue(entry.isClass());
+            assertEquals(data.length, entry.getSize());
+            assertArrayEquals(data, toArray(jar.contents(entry)));
+        }
+    }
+
+    @Test
+    public void readsDeflatedEntries() throws IOException {
+        byte[] small = "hello".getBytes(StandardCharsets.UTF_8);
+        byte[] large = bytes(100000, 2);
+        File file = this.folder.newFile("deflated.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("META-INF/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("a/Small.class"));
+            out.write(small);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("a/Large.class"));
+            out.write(large);
+            out.closeEntry();
+        }
+        try (MappedJar jar = MappedJar.open(file)) {
+            assertEquals(3, jar.getEntries().size());
+            assertTrue(jar.getEntry("META-INF/").isDirectory());
+            MappedJar.Entry entry = jar.getEntry("a/Large.class");
+            assertFalse(entry.isStored());
+            assertArrayEquals(large, toArray(jar.contents(entry)));
+            assertArrayEquals(small, toArray(jar.contents(jar.getEntry("a/Small.class"))));
+            assertNull(jar.getEntry("a/Missing.class"));
+        }
+    }
+
+    @Test
+    public void readsZip64EntryCount() throws IOException {
+        // more than 65535 entries make ZipOutputStream write a zip64 end of central directory
+        int count = 0x10000 + 10;
+        File file = this.folder.newFile("many.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.setLevel(0);
+            for (int i = 0; i < count; i++) {
+                out.putNextEntry(new ZipEntry("c/C" + i + ".class"));
+                out.write(i);
+                out.closeEntry();
+            }
+        }
+        try (MappedJar jar = MappedJar.open(file)) {
+            assertEquals(count, jar.getEntries().size());
+            MappedJar.Entry last = jar.getEntry("c/C" + (count - 1) + ".class");
+            assertArrayEquals(new byte[]{(byte) (count - 1)}, toArray(jar.contents(last)));
+        }
+    }
+
+    @Test
+    public void readsZip64ExtraFields() throws IOException {
+        byte[] data = "zip64 contents".getBytes(StandardCharsets.UTF_8);
+        File file = this.folder.newFile("zip64.jar");
+        Files.write(file.toPath(), zip64(data));
+        try (MappedJar jar = MappedJar.open(file)) {
+            MappedJar.Entry entry = jar.getEntry("z/Z.class");
+            assertNotNull(entry);
+            assertEquals(data.length, entry.getSize());
+            assertEquals(data.length, entry.getCompressedSize());
+            assertArrayEquals(data, toArray(jar.contents(entry)));
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedFiles() throws IOException {
+        File file = this.folder.newFile("truncated.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("a/B.class"));
+            out.write(bytes(5000, 3));
+            out.closeEntry();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        try {
+            MappedJar.open(file).close();
+            fail("truncated jar was opened");
+        } catch (IOException expected) {
+            // end of central directory is gone
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        try {
+            MappedJar.open(file).close();
+            fail("truncated jar was opened");
+        } catch (IOException expected) {
+            // only local data left
+        }
+    }
+
+    @Test
+    public void rejectsCorruptOffsets() throws IOException {
+        File file = this.folder.newFile("corrupt.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("a/B.class"));
+            out.write(bytes(100, 4));
+            out.closeEntry();
+        }
+        byte[] jar = Files.readAllBytes(file.toPath());
+        int central = centralHeader(jar);
+        // local header offset past the end of the file
+        assertCorrupt(file, patch(jar, central + 42, jar.length - 10));
+        // local header offset beyond what an int can address
+        assertCorrupt(file, patch(jar, central + 42, 0xFFFFFF00));
+        // compressed size running past the end of the file
+        assertCorrupt(file, patch(jar, central + 20, jar.length));
+    }
+
+    private static void assertCorrupt(File file, byte[] contents) throws IOException {
+        Files.write(file.toPath(), contents);
+        try (MappedJar jar = MappedJar.open(file)) {
+            jar.contents(jar.getEntry("a/B.class"));
+            fail("corrupt entry was read");
+        } catch (IOException expected) {
+            // not an IndexOutOfBoundsException or IllegalArgumentException
+        }
+    }
+
+    private static int centralHeader(byte[] jar) {
+        ByteBuffer buffer = ByteBuffer.wrap(jar).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i <= jar.length - 4; i++) {
+            if (buffer.getInt(i) == 0x02014b50) {
+                return i;
+            }
+        }
+        throw new AssertionError("no central directory header");
+    }
+
+    private static byte[] patch(byte[] jar, int offset, int value) {
+        byte[] patched = jar.clone();
+        ByteBuffer.wrap(patched).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        return patched;
+    }
+
+    @Test
+    public void rejectsReadsAfterClose() throws IOException {
+        File file = this.folder.newFile("closed.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("a/B.class"));
+            out.write(1);
+            out.closeEntry();
+        }
+        MappedJar jar = MappedJar.open(file);
+        MappedJar.Entry entry = jar.getEntry("a/B.class");
+        jar.close();
+        jar.close();
+        try {
+            jar.contents(entry);
+            fail("closed jar was read");
+        } catch (IOException expected) {
+            // unmapped
+        }
+        assertTrue(file.delete());
+    }
+
+    /**
+     * A single stored entry whose sizes and offset live only in the zip64 extra field,
+     * followed by a zip64 end of central directory, its locator and a classic end record pointing at it
+     */
+    private static byte[] zip64(byte[] data) {
+        byte[] name = "z/Z.class".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(512 + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) 0)
+                .putInt(0).putInt((int) crc(data)).putInt(data.length).putInt(data.length)
+                .putShort((short) name.length).putShort((short) 0).put(name).put(data);
+        int central = buffer.position();
+        buffer.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) 0)
+                .putInt(0).putInt((int) crc(data)).putInt(0xFFFFFFFF).putInt(0xFFFFFFFF)
+                .putShort((short) name.length).putShort((short) 28).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt(0).putInt(0xFFFFFFFF).put(name)
+                .putShort((short) 0x0001).putShort((short) 24).putLong(data.length).putLong(data.length).putLong(0);
+        int centralSize = buffer.position() - central;
+        int zip64End = buffer.position();
+        buffer.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+                .putLong(1).putLong(1).putLong(centralSize).putLong(central);
+        buffer.putInt(0x07064b50).putInt(0).putLong(zip64End).putInt(1);
+        buffer.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 0xFFFF)
+                .putShort((short) 0xFFFF).putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) 0);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static byte[] bytes(int length, long seed) {
+        // compressible but not trivial
+        Random random = new Random(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        for (int i = 0; i < length; i++) {
+            out.write(random.nextInt(16));
+        }
+        return out.toByteArray();
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+}